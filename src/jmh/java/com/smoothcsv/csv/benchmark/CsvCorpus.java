@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+
+/**
+ * Generated CSV corpora used by the benchmarks.
+ * <p>
+ * Every corpus is generated from a fixed seed so that runs are comparable with each other.
+ * </p>
+ *
+ * @author kohii
+ */
+public enum CsvCorpus {
+
+  /**
+   * 8 short numeric columns per row, quoted only where necessary.
+   */
+  NARROW_NUMERIC(CsvProperties.DEFAULT) {
+    @Override
+    void appendRow(StringBuilder sb, Random random) {
+      for (int i = 0; i < 8; i++) {
+        if (i != 0) {
+          sb.append(',');
+        }
+        if (i % 2 == 0) {
+          sb.append(random.nextInt(1000000));
+        } else {
+          sb.append(random.nextInt(100000)).append('.').append(random.nextInt(100));
+        }
+      }
+      sb.append('\n');
+    }
+  },
+
+  /**
+   * 500 numeric columns per row.
+   */
+  WIDE(CsvProperties.DEFAULT) {
+    @Override
+    void appendRow(StringBuilder sb, Random random) {
+      for (int i = 0; i < 500; i++) {
+        if (i != 0) {
+          sb.append(',');
+        }
+        sb.append(random.nextInt(100000));
+      }
+      sb.append('\n');
+    }
+  },
+
+  /**
+   * Every value is quoted and many of them contain separators and escaped quotes.
+   */
+  QUOTE_HEAVY(CsvProperties.DEFAULT) {
+    @Override
+    void appendRow(StringBuilder sb, Random random) {
+      for (int i = 0; i < 10; i++) {
+        if (i != 0) {
+          sb.append(',');
+        }
+        sb.append('"');
+        int words = 1 + random.nextInt(6);
+        for (int w = 0; w < words; w++) {
+          switch (random.nextInt(4)) {
+            case 0:
+              sb.append("\"\"quoted\"\"");
+              break;
+            case 1:
+              sb.append("comma, separated");
+              break;
+            default:
+              appendWord(sb, random);
+              break;
+          }
+          sb.append(' ');
+        }
+        sb.append('"');
+      }
+      sb.append("\r\n");
+    }
+  },
+
+  /**
+   * Quoted values spanning several lines.
+   */
+  MULTI_LINE(CsvProperties.DEFAULT) {
+    @Override
+    void appendRow(StringBuilder sb, Random random) {
+      sb.append(random.nextInt(1000000)).append(',');
+      sb.append('"');
+      int lines = 1 + random.nextInt(5);
+      for (int l = 0; l < lines; l++) {
+        if (l != 0) {
+          sb.append("\r\n");
+        }
+        int words = 3 + random.nextInt(8);
+        for (int w = 0; w < words; w++) {
+          appendWord(sb, random);
+          sb.append(' ');
+        }
+      }
+      sb.append('"').append(',');
+      appendWord(sb, random);
+      sb.append("\r\n");
+    }
+  },
+
+  /**
+   * Japanese text, which is multibyte in UTF-8.
+   */
+  JAPANESE(CsvProperties.DEFAULT) {
+    @Override
+    void appendRow(StringBuilder sb, Random random) {
+      for (int i = 0; i < 6; i++) {
+        if (i != 0) {
+          sb.append(',');
+        }
+        int len = 2 + random.nextInt(20);
+        for (int j = 0; j < len; j++) {
+          sb.append(JAPANESE_CHARACTERS.charAt(random.nextInt(JAPANESE_CHARACTERS.length())));
+        }
+      }
+      sb.append('\n');
+    }
+  },
+
+  /**
+   * Tab separated values without any quote.
+   */
+  TSV(CsvProperties.of('\t')) {
+    @Override
+    void appendRow(StringBuilder sb, Random random) {
+      for (int i = 0; i < 12; i++) {
+        if (i != 0) {
+          sb.append('\t');
+        }
+        if (i % 3 == 0) {
+          sb.append(random.nextInt(1000000));
+        } else {
+          appendWord(sb, random);
+        }
+      }
+      sb.append('\n');
+    }
+  };
+
+  private static final String JAPANESE_CHARACTERS =
+      "あいうえおかきくけこさしすせそたちつてとなにぬねのはひふへほまみむめもやゆよらりるれろわをん"
+          + "アイウエオカキクケコ日本語東京大阪株式会社売上高利益年月日番号名前住所電話";
+
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+  private final CsvProperties properties;
+
+  CsvCorpus(CsvProperties properties) {
+    this.properties = properties;
+  }
+
+  /**
+   * @return CSV properties to read or write this corpus
+   */
+  public CsvProperties getProperties() {
+    return properties;
+  }
+
+  /**
+   * Generates the corpus.
+   *
+   * @param approximateBytes The approximate size of the corpus in UTF-8 bytes
+   * @return The generated CSV text
+   */
+  public Text generate(int approximateBytes) {
+    Random random = new Random(0x5eed);
+    StringBuilder sb = new StringBuilder(approximateBytes);
+    int rows = 0;
+    // multibyte corpora are roughly three times larger in bytes than in chars
+    int limit = this == JAPANESE ? approximateBytes / 3 : approximateBytes;
+    while (sb.length() < limit) {
+      appendRow(sb, random);
+      rows++;
+    }
+    String text = sb.toString();
+    return new Text(text, rows, text.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  abstract void appendRow(StringBuilder sb, Random random);
+
+  private static void appendWord(StringBuilder sb, Random random) {
+    int len = 2 + random.nextInt(9);
+    for (int i = 0; i < len; i++) {
+      sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+  }
+
+  /**
+   * Generated CSV text.
+   */
+  public static final class Text {
+
+    private final String csv;
+    private final int rowCount;
+    private final int byteCount;
+
+    Text(String csv, int rowCount, int byteCount) {
+      this.csv = csv;
+      this.rowCount = rowCount;
+      this.byteCount = byteCount;
+    }
+
+    /**
+     * @return CSV text
+     */
+    public String getCsv() {
+      return csv;
+    }
+
+    /**
+     * @return The number of rows in the text
+     */
+    public int getRowCount() {
+      return rowCount;
+    }
+
+    /**
+     * @return The size of the text in UTF-8 bytes
+     */
+    public int getByteCount() {
+      return byteCount;
+    }
+
+    /**
+     * @return The size of the text in megabytes
+     */
+    public double getMegabytes() {
+      return byteCount / (1024.0 * 1024.0);
+    }
+  }
+}
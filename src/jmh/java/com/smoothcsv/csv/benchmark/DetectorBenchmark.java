@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.smoothcsv.csv.detector.CsvPropertiesDetectorImpl;
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link CsvPropertiesDetectorImpl#detectProperties(CharSequence)}.
+ * <p>
+ * One invocation detects the properties of a sample taken from the head of the corpus.
+ * </p>
+ *
+ * @author kohii
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectorBenchmark {
+
+  @Param
+  public CsvCorpus corpus;
+
+  @Param("65536")
+  public int sampleBytes;
+
+  private final CsvPropertiesDetectorImpl detector = new CsvPropertiesDetectorImpl();
+  private String sample;
+  private int sampleRows;
+  private double sampleMegabytes;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    CsvCorpus.Text text = corpus.generate(sampleBytes);
+    sample = text.getCsv();
+    sampleRows = text.getRowCount();
+    sampleMegabytes = sample.getBytes(StandardCharsets.UTF_8).length / (1024.0 * 1024.0);
+  }
+
+  @Benchmark
+  public CsvProperties detectProperties(Throughput throughput) {
+    CsvProperties properties = detector.detectProperties(sample);
+    throughput.add(sampleRows, sampleMegabytes);
+    return properties;
+  }
+}
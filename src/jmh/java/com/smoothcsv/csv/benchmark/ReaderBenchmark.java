@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.smoothcsv.csv.reader.ByteInput;
+import com.smoothcsv.csv.reader.ColumnSelection;
+import com.smoothcsv.csv.reader.CsvReadOption;
+import com.smoothcsv.csv.reader.DefaultByteCsvReader;
+import com.smoothcsv.csv.reader.DefaultCsvReader;
+import com.smoothcsv.csv.reader.ValueCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link DefaultCsvReader#readRow()}, with and without a {@link ValueCache}, and
+ * {@link DefaultByteCsvReader#readRow()}.
+ * <p>
+ * One invocation reads one row from the UTF-8 encoded corpus. The reader starts over from the beginning of the corpus when it
+ * reaches the end.
+ * </p>
+ *
+ * @author kohii
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReaderBenchmark {
+
+  @Param
+  public CsvCorpus corpus;
+
+  @Param("8388608")
+  public int corpusBytes;
+
+  /**
+   * Comma separated indices of the columns to read, or "all".
+   */
+  @Param({"all", "0,3,5"})
+  public String columns;
+
+  private byte[] bytes;
+  private double megabytesPerRow;
+  private CsvReadOption options;
+  private DefaultCsvReader reader;
+  private DefaultCsvReader cachingReader;
+  private DefaultByteCsvReader byteReader;
+  private final List<String> reusableRow = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void generate() {
+    CsvCorpus.Text text = corpus.generate(corpusBytes);
+    bytes = text.getCsv().getBytes(StandardCharsets.UTF_8);
+    megabytesPerRow = text.getMegabytes() / text.getRowCount();
+    if (columns.equals("all")) {
+      options = CsvReadOption.DEFAULT;
+    } else {
+      int[] indices = Arrays.stream(columns.split(",")).mapToInt(Integer::parseInt).toArray();
+      options = CsvReadOption.DEFAULT.withColumns(ColumnSelection.indices(indices));
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void open() {
+    reader = new DefaultCsvReader(
+        new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8),
+        corpus.getProperties(), options);
+    cachingReader = new DefaultCsvReader(
+        new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8),
+        corpus.getProperties(), options);
+    cachingReader.setValueCache(new ValueCache());
+    byteReader = new DefaultByteCsvReader(ByteInput.of(ByteBuffer.wrap(bytes)),
+        corpus.getProperties(), options);
+  }
+
+  @TearDown(Level.Iteration)
+  public void close() throws IOException {
+    reader.close();
+    cachingReader.close();
+    byteReader.close();
+  }
+
+  @Benchmark
+  public List<String> readRow(Throughput throughput) throws IOException {
+    List<String> row = reader.readRow();
+    if (row == null) {
+      close();
+      open();
+      row = reader.readRow();
+    }
+    throughput.add(1, megabytesPerRow);
+    return row;
+  }
+
+  @Benchmark
+  public List<String> readRowIntoList(Throughput throughput) throws IOException {
+    List<String> row = reader.readRow(reusableRow);
+    if (row == null) {
+      close();
+      open();
+      row = reader.readRow(reusableRow);
+    }
+    throughput.add(1, megabytesPerRow);
+    return row;
+  }
+
+  @Benchmark
+  public List<String> readRowWithValueCache(Throughput throughput) throws IOException {
+    List<String> row = cachingReader.readRow();
+    if (row == null) {
+      close();
+      open();
+      row = cachingReader.readRow();
+    }
+    throughput.add(1, megabytesPerRow);
+    return row;
+  }
+
+  @Benchmark
+  public List<String> readRowFromBytes(Throughput throughput) throws IOException {
+    List<String> row = byteReader.readRow();
+    if (row == null) {
+      close();
+      open();
+      row = byteReader.readRow();
+    }
+    throughput.add(1, megabytesPerRow);
+    return row;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.benchmark;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.smoothcsv.csv.reader.ColumnType;
+import com.smoothcsv.csv.reader.DefaultCsvReader;
+import com.smoothcsv.csv.reader.RowBatch;
+import com.smoothcsv.csv.reader.RowBatchReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link RowBatchReader#read(RowBatch)} against parsing the numbers of the rows read by
+ * {@link DefaultCsvReader#readRow()}, on {@link CsvCorpus#NARROW_NUMERIC}.
+ * <p>
+ * One invocation reads {@link #BATCH_SIZE} rows.
+ * </p>
+ *
+ * @author kohii
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RowBatchBenchmark {
+
+  private static final int BATCH_SIZE = 1024;
+
+  private static final CsvCorpus CORPUS = CsvCorpus.NARROW_NUMERIC;
+
+  @Param("8388608")
+  public int corpusBytes;
+
+  private char[] chars;
+  private double megabytesPerRow;
+  private RowBatch batch;
+  private long[] longs;
+  private double[] doubles;
+  private DefaultCsvReader reader;
+  private RowBatchReader batchReader;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    CsvCorpus.Text text = CORPUS.generate(corpusBytes);
+    chars = text.getCsv().toCharArray();
+    megabytesPerRow = text.getMegabytes() / text.getRowCount();
+    ColumnType[] types = new ColumnType[8];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = i % 2 == 0 ? ColumnType.LONG : ColumnType.DOUBLE;
+    }
+    batch = new RowBatch(BATCH_SIZE, types);
+    longs = new long[BATCH_SIZE * 4];
+    doubles = new double[BATCH_SIZE * 4];
+  }
+
+  @Setup(Level.Iteration)
+  public void open() {
+    reader = new DefaultCsvReader(new CharArrayReader(chars), CORPUS.getProperties());
+    batchReader = new RowBatchReader(new CharArrayReader(chars), CORPUS.getProperties());
+  }
+
+  @TearDown(Level.Iteration)
+  public void close() throws IOException {
+    reader.close();
+    batchReader.close();
+  }
+
+  @Benchmark
+  public double[] readRowAndParse(Throughput throughput) throws IOException {
+    int n = 0;
+    while (n < BATCH_SIZE) {
+      List<String> row = reader.readRow();
+      if (row == null) {
+        close();
+        open();
+        continue;
+      }
+      for (int i = 0; i < row.size(); i += 2) {
+        longs[n * 4 + i / 2] = Long.parseLong(row.get(i));
+        doubles[n * 4 + i / 2] = Double.parseDouble(row.get(i + 1));
+      }
+      n++;
+    }
+    throughput.add(n, n * megabytesPerRow);
+    return doubles;
+  }
+
+  @Benchmark
+  public RowBatch readBatch(Throughput throughput) throws IOException {
+    int n = batchReader.read(batch);
+    if (n == 0) {
+      close();
+      open();
+      n = batchReader.read(batch);
+    }
+    throughput.add(n, n * megabytesPerRow);
+    return batch;
+  }
+}
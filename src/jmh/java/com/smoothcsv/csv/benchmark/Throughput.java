@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results reported next to the primary score.
+ * <p>
+ * JMH reports each field as a rate, so {@link #rows} shows up as rows/s and {@link #megabytes}
+ * as MB/s. The reader and writer benchmarks process one row per invocation, therefore
+ * <code>gc.alloc.rate.norm</code> of the GC profiler is the allocation per row.
+ * </p>
+ *
+ * @author kohii
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class Throughput {
+
+  /**
+   * The number of rows processed.
+   */
+  public long rows;
+
+  /**
+   * The number of megabytes processed, measured in UTF-8.
+   */
+  public double megabytes;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    rows = 0;
+    megabytes = 0;
+  }
+
+  void add(int rowCount, double mb) {
+    rows += rowCount;
+    megabytes += mb;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.smoothcsv.csv.prop.QuoteApplyRule;
+import com.smoothcsv.csv.reader.CsvReadOption;
+import com.smoothcsv.csv.reader.DefaultCsvReader;
+import com.smoothcsv.csv.writer.CsvWriteOption;
+import com.smoothcsv.csv.writer.DefaultCsvWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link DefaultCsvWriter#writeRow(Object)}.
+ * <p>
+ * One invocation writes one row of the corpus to a writer, or to a stream encoded in UTF-8, that
+ * discards its output.
+ * </p>
+ *
+ * @author kohii
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WriterBenchmark {
+
+  @Param
+  public CsvCorpus corpus;
+
+  @Param("8388608")
+  public int corpusBytes;
+
+  @Param({"QUOTES_ALL", "QUOTES_IF_NECESSARY"})
+  public QuoteApplyRule quoteRule;
+
+  private List<List<Object>> rows;
+  private double megabytesPerRow;
+  private DefaultCsvWriter writer;
+  private DefaultCsvWriter utf8Writer;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void generate() throws IOException {
+    CsvCorpus.Text text = corpus.generate(corpusBytes);
+    megabytesPerRow = text.getMegabytes() / text.getRowCount();
+    rows = new ArrayList<>(text.getRowCount());
+    try (DefaultCsvReader reader = new DefaultCsvReader(new StringReader(text.getCsv()),
+        corpus.getProperties(), CsvReadOption.DEFAULT)) {
+      List<String> row;
+      while ((row = reader.readRow()) != null) {
+        rows.add(new ArrayList<>(row));
+      }
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void open() {
+    writer = new DefaultCsvWriter(new NullWriter(), corpus.getProperties(),
+        CsvWriteOption.of(quoteRule));
+    utf8Writer = new DefaultCsvWriter(new NullOutputStream(), corpus.getProperties(),
+        CsvWriteOption.of(quoteRule));
+    next = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void close() throws IOException {
+    writer.close();
+    utf8Writer.close();
+  }
+
+  @Benchmark
+  public void writeRow(Throughput throughput) throws IOException {
+    writer.writeRow(rows.get(next));
+    if (++next == rows.size()) {
+      next = 0;
+    }
+    throughput.add(1, megabytesPerRow);
+  }
+
+  @Benchmark
+  public void writeRowUtf8(Throughput throughput) throws IOException {
+    utf8Writer.writeRow(rows.get(next));
+    if (++next == rows.size()) {
+      next = 0;
+    }
+    throughput.add(1, megabytesPerRow);
+  }
+
+  /**
+   * A writer that discards everything.
+   */
+  static final class NullWriter extends Writer {
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      // discard
+    }
+
+    @Override
+    public void write(int c) {
+      // discard
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+      // discard
+    }
+
+    @Override
+    public void flush() {
+      // do nothing
+    }
+
+    @Override
+    public void close() {
+      // do nothing
+    }
+  }
+
+  /**
+   * A stream that discards everything.
+   */
+  static final class NullOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+      // discard
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      // discard
+    }
+  }
+}
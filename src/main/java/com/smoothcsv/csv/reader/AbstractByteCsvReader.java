@@ -0,0 +1,705 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import com.smoothcsv.csv.prop.LineSeparator;
+
+/**
+ * Abstract CSV reader that parses UTF-8 encoded bytes.
+ * <p>
+ * Unlike {@link AbstractCsvReader}, this reader does not decode the input into characters before
+ * parsing. Separators, quotes and line breaks are found in the bytes directly, and the bytes of a
+ * value are decoded only when a {@link String} is requested. This requires the separator, the
+ * quote and the escape character to be ASCII characters.
+ * </p>
+ *
+ * @param <R> The class that holds values of one row.
+ * @author kohii
+ */
+public abstract class AbstractByteCsvReader<R> extends RowParser<R> implements Closeable {
+
+  /**
+   * A character to separate each fields.
+   */
+  protected final byte separator;
+
+  /**
+   * A character to quote a field.
+   */
+  protected final byte quote;
+
+  /**
+   * A character to escape {@link #quote}. If this character equals the null character,
+   * {@link #quote} characters must be represented by a pair of {@link #quote} characters.
+   */
+  protected final byte escape;
+
+  private ByteInput in;
+
+  /**
+   * The current window of the input, which is the input-buffer. {@link #array} is the backing
+   * array of the window if it has one. {@link #bufferBase} is the offset in the input of the index
+   * 0 of the window.
+   */
+  private ByteBuffer buf;
+  private byte[] array;
+  private int arrayOffset;
+
+  /**
+   * If true, the bytes read from {@link #buf} are captured. When the window is replaced, the bytes
+   * from {@link #captureFrom} are copied to {@link #captureBuffer}, which is allocated when the
+   * first bytes are copied.
+   */
+  private boolean capturing;
+  private byte[] captureBuffer;
+  private int captureLength;
+  private int captureFrom;
+
+  /**
+   * The field buffer, which holds the bytes of the value being read that are not in the range of
+   * {@link #buf} from {@link #sliceStart} to {@link #sliceEnd}.
+   */
+  private byte[] fieldBuffer;
+  private ByteBuffer fieldByteBuffer;
+
+  /**
+   * Buffer to decode bytes that are not backed by an array.
+   */
+  private byte[] decodeBuffer;
+
+  /**
+   * The index used by {@link #seekToRow(long)}, or null if the input is not indexed.
+   */
+  private RowOffsetIndex rowOffsetIndex;
+
+  /**
+   * Constructs AbstractByteCsvReader.
+   *
+   * @param in         A ByteInput
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   */
+  public AbstractByteCsvReader(ByteInput in, CsvProperties properties, CsvReadOption options) {
+    super(properties, options);
+
+    this.separator = toByte(separatorUnit);
+    this.quote = toByte(quoteUnit);
+    this.escape = toByte(escapeUnit);
+
+    setupInput(in);
+  }
+
+  /**
+   * Constructs a reader that parses the raw bytes of the rows that another reader reads next. The
+   * bytes must be given by {@link #setBytes(ByteBuffer)} before reading any row.
+   *
+   * @param parent The reader that reads the bytes
+   */
+  private AbstractByteCsvReader(AbstractByteCsvReader<R> parent) {
+    super(parent);
+
+    this.separator = parent.separator;
+    this.quote = parent.quote;
+    this.escape = parent.escape;
+
+    setupInput(ByteInput.of(ByteBuffer.allocate(0)));
+    this.bufferBase = parent.getPosition();
+    continueRows(parent);
+  }
+
+  /**
+   * Sets the bytes to parse.
+   *
+   * @param bytes The bytes of the rows
+   */
+  private void setBytes(ByteBuffer bytes) {
+    this.in = ByteInput.of(bytes);
+  }
+
+  /**
+   * Returns the offset in the input of the next byte to read. Between rows, this is the offset of
+   * the beginning of the next row.
+   *
+   * @return The byte offset
+   */
+  public long getPosition() {
+    return bufferBase + nextIndex;
+  }
+
+  /**
+   * Reads the raw bytes of the next rows without creating row objects, and returns a spliterator
+   * that parses the bytes with a copy of this reader. If the rows lie in one window of an input
+   * whose windows are not filled again, such as a mapped file, the copy reads the window instead of
+   * a copy of the bytes.
+   *
+   * @param maxRows The maximum number of rows to read
+   * @return the spliterator, or null if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  private RowSpliterator<R> readBatch(int maxRows) throws IOException {
+    ensureOpen();
+    AbstractByteCsvReader<R> reader = new BatchReader<>(this);
+    int rowCount;
+    ByteBuffer bytes = null;
+    capturing = true;
+    captureFrom = nextIndex;
+    try {
+      rowCount = scanRows(maxRows);
+      if (rowCount > 0) {
+        if (captureBuffer == null) {
+          // the rows lie in the current window, which the input may let the batch refer to
+          bytes = in.share(buf, captureFrom, nextIndex);
+        }
+        if (bytes == null) {
+          captureBytes(nextIndex);
+          bytes = ByteBuffer.wrap(captureBuffer, 0, captureLength);
+        }
+      }
+    } finally {
+      capturing = false;
+      captureBuffer = null;
+      captureLength = 0;
+    }
+    if (rowCount == 0) {
+      return null;
+    }
+    reader.setBytes(bytes);
+    return reader.spliterator(rowCount);
+  }
+
+  /**
+   * Returns the position of this reader, from which another reader can resume reading by
+   * {@link #resume(CsvCheckpoint)}. This must be called between rows, not while a row is being
+   * read.
+   *
+   * @return The checkpoint, whose offset is {@link #getPosition()}
+   */
+  public CsvCheckpoint checkpoint() {
+    return checkpointAt(true);
+  }
+
+  /**
+   * Resumes reading from a checkpoint taken by a reader of the same input, so that the next row
+   * read is the row at the checkpoint. The reader must have the same properties and options as the
+   * reader the checkpoint was taken by.
+   * <p>
+   * If the input supports seeking, the reader jumps to the offset of the checkpoint. Otherwise the
+   * bytes up to the offset are skipped without being parsed, which requires that this reader has
+   * not read past the checkpoint.
+   * </p>
+   *
+   * @param checkpoint The checkpoint
+   * @throws IOException If an I/O error occurs, or the input ends before the checkpoint
+   */
+  public void resume(CsvCheckpoint checkpoint) throws IOException {
+    ensureOpen();
+    if (!checkpoint.isByteOffset()) {
+      throw new IllegalArgumentException("The checkpoint has been taken by a character reader");
+    }
+    long offset = checkpoint.getOffset();
+    if (in.seek(offset)) {
+      buf = null;
+      array = null;
+      nextIndex = limit = 0;
+      bufferBase = offset;
+    } else {
+      if (offset < getPosition()) {
+        throw new IllegalStateException("The reader has read past the checkpoint");
+      }
+      while (bufferBase + limit < offset) {
+        if (!fill()) {
+          throw new EOFException("The input ends before the checkpoint");
+        }
+      }
+      nextIndex = (int) (offset - bufferBase);
+    }
+    restore(checkpoint);
+  }
+
+  /**
+   * Sets the index used by {@link #seekToRow(long)}. The index must have been built from the same
+   * input with the same properties and options as this reader.
+   *
+   * @param rowOffsetIndex The index, or null to seek without an index
+   */
+  public void setRowOffsetIndex(RowOffsetIndex rowOffsetIndex) {
+    this.rowOffsetIndex = rowOffsetIndex;
+  }
+
+  /**
+   * @return The index used by {@link #seekToRow(long)}, or null if it is not set
+   */
+  public RowOffsetIndex getRowOffsetIndex() {
+    return rowOffsetIndex;
+  }
+
+  /**
+   * Moves to the specified row, so that the next call of {@link #readRow()} reads the row.
+   * <p>
+   * If the index set by {@link #setRowOffsetIndex(RowOffsetIndex)} has a row nearer to the
+   * specified row than the current row, the reader jumps to the offset of the indexed row, and
+   * rows are scanned forward from there. Without an index, the reader goes back to the beginning
+   * of the input if the specified row is before the current row. Going back requires an input
+   * that supports seeking, such as {@link ByteInput#map(java.nio.file.Path)},
+   * {@link ByteInput#of(ByteBuffer)} and a {@link java.nio.channels.SeekableByteChannel}.
+   * </p>
+   *
+   * @param row The row index
+   * @return false if the end of the input has been reached before the row
+   * @throws IOException                   If an I/O error occurs
+   * @throws UnsupportedOperationException If the input does not support seeking
+   */
+  public boolean seekToRow(long row) throws IOException {
+    ensureOpen();
+    if (row < 0) {
+      throw new IllegalArgumentException("Negative row index: " + row);
+    }
+    // resolve the selected columns before jumping over the header row
+    skipHeader();
+    long indexedRow = rowOffsetIndex != null ? rowOffsetIndex.getIndexedRow(row) : 0;
+    if (row < rowIndex || indexedRow > rowIndex) {
+      long offset = rowOffsetIndex != null ? rowOffsetIndex.getOffset(row) : 0;
+      if (!in.seek(offset)) {
+        throw new UnsupportedOperationException("The input does not support seeking");
+      }
+      buf = null;
+      array = null;
+      nextIndex = limit = 0;
+      bufferBase = offset;
+      bomChecked = offset != 0;
+      rowIndex = indexedRow;
+      clearValue();
+    }
+    while (rowIndex < row) {
+      if (!scanRow()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (in == null) {
+      return;
+    }
+    try {
+      in.close();
+    } finally {
+      in = null;
+      buf = null;
+      array = null;
+      fieldBuffer = null;
+      fieldByteBuffer = null;
+    }
+  }
+
+  /**
+   * Returns a {@code Stream}, the elements of which are rows read from this reader.
+   * <p>
+   * If the stream is parallel, this reader reads the raw bytes of batches of rows, and the batches
+   * are parsed concurrently by copies of this reader. The hooks of this reader may then be called
+   * from multiple threads at the same time.
+   * </p>
+   *
+   * @return a {@code Stream} providing the rows
+   * @see AbstractCsvReader#rows()
+   */
+  public Stream<R> rows() {
+    return StreamSupport.stream(spliterator(Long.MAX_VALUE), false);
+  }
+
+  /**
+   * Returns a spliterator over the rows read from this reader.
+   *
+   * @param rowCount The number of rows, or {@link Long#MAX_VALUE} if unknown
+   * @return the spliterator
+   */
+  private RowSpliterator<R> spliterator(long rowCount) {
+    return new RowSpliterator<R>(rowCount) {
+      @Override
+      R readRow() throws IOException {
+        return AbstractByteCsvReader.this.readRow();
+      }
+
+      @Override
+      RowSpliterator<R> readBatch(int maxRows) throws IOException {
+        return AbstractByteCsvReader.this.readBatch(maxRows);
+      }
+    };
+  }
+
+  /**
+   * Creates and returns object that holds values of one row.
+   *
+   * @param rowIndex current row index
+   * @return Object that holds values of one row.
+   */
+  @Override
+  protected abstract R createNewRow(long rowIndex);
+
+  /**
+   * Handles a value.
+   * <p>
+   * The value is passed as a range of UTF-8 bytes. If the value lies in the input without any
+   * escape sequence, the range points into the input directly. The bytes must be accessed by
+   * absolute index, are valid only during this call and must not be modified.
+   * </p>
+   * <p>
+   * If {@link CsvReadOption#getColumns()} is specified, only the values in the selected columns
+   * are passed. The column index is the index of the column in the row.
+   * </p>
+   * <p>
+   * The default implementation decodes the bytes and calls
+   * {@link #handleValue(Object, long, int, String)}. Subclasses that do not need {@link String}
+   * values should override this method too, and implement
+   * {@link #handleValue(Object, long, int, String)} in terms of it.
+   * </p>
+   *
+   * @param row
+   * @param rowIndex    current row index
+   * @param columnIndex
+   * @param buffer      the buffer that holds the bytes of the value
+   * @param offset      the index of the value in the buffer
+   * @param length      the length of the value in bytes
+   */
+  protected void handleValue(R row, long rowIndex, int columnIndex, ByteBuffer buffer, int offset,
+                             int length) {
+    handleValue(row, rowIndex, columnIndex, decode(buffer, offset, length));
+  }
+
+  /**
+   * Handles a value.
+   * <p>
+   * This method is called by {@link #handleValue(Object, long, int, ByteBuffer, int, int)} unless it
+   * is overridden.
+   * </p>
+   *
+   * @param row
+   * @param rowIndex    current row index
+   * @param columnIndex
+   * @param value
+   */
+  protected abstract void handleValue(R row, long rowIndex, int columnIndex, String value);
+
+  /**
+   * Handles a line feed character.
+   *
+   * @param row
+   * @param rowIndex     current row index
+   * @param lineFeedCode
+   */
+  @Override
+  protected void handleLineSeparator(R row, long rowIndex, LineSeparator lineFeedCode) {
+    // do nothing
+  }
+
+  /**
+   * Decodes UTF-8 bytes into a {@link String}.
+   *
+   * @param buffer the buffer that holds the bytes
+   * @param offset the index of the bytes in the buffer
+   * @param length the number of bytes
+   * @return the decoded String
+   */
+  protected String decode(ByteBuffer buffer, int offset, int length) {
+    if (length == 0) {
+      return "";
+    }
+    byte[] bytes;
+    int off;
+    if (buffer.hasArray()) {
+      bytes = buffer.array();
+      off = buffer.arrayOffset() + offset;
+    } else {
+      if (decodeBuffer == null || decodeBuffer.length < length) {
+        decodeBuffer = new byte[Math.max(length, INITIAL_FIELD_BUFFER_SIZE)];
+      }
+      bytes = decodeBuffer;
+      off = 0;
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(offset + i);
+      }
+    }
+    for (int i = off, end = off + length; i < end; i++) {
+      if (bytes[i] < 0) {
+        return new String(bytes, off, length, StandardCharsets.UTF_8);
+      }
+    }
+    // ASCII only
+    return new String(bytes, off, length, StandardCharsets.ISO_8859_1);
+  }
+
+  @Override
+  int unitAt(int index) {
+    return array != null ? array[arrayOffset + index] : buf.get(index);
+  }
+
+  @Override
+  int bomLength(int index) {
+    return limit - index >= 3 && unitAt(index) == (byte) 0xEF
+        && unitAt(index + 1) == (byte) 0xBB && unitAt(index + 2) == (byte) 0xBF ? 3 : 0;
+  }
+
+  @Override
+  int scanUnquoted(int from) {
+    byte separator = this.separator, quote = this.quote, escape = this.escape;
+    int i = from, n = limit;
+    if (array != null) {
+      byte[] a = array;
+      int off = arrayOffset;
+      while (i < n) {
+        byte c = a[off + i];
+        if (c == separator || c == quote || c == escape || c == '\n' || c == '\r') {
+          break;
+        }
+        i++;
+      }
+    } else {
+      ByteBuffer b = buf;
+      while (i < n) {
+        byte c = b.get(i);
+        if (c == separator || c == quote || c == escape || c == '\n' || c == '\r') {
+          break;
+        }
+        i++;
+      }
+    }
+    return i;
+  }
+
+  @Override
+  int scanQuoted(int from) {
+    byte quote = this.quote, escape = this.escape;
+    int i = from, n = limit;
+    if (array != null) {
+      byte[] a = array;
+      int off = arrayOffset;
+      while (i < n) {
+        byte c = a[off + i];
+        if (c == quote || c == escape) {
+          break;
+        }
+        i++;
+      }
+    } else {
+      ByteBuffer b = buf;
+      while (i < n) {
+        byte c = b.get(i);
+        if (c == quote || c == escape) {
+          break;
+        }
+        i++;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Passes the value being read to {@link #handleValue(Object, long, int, ByteBuffer, int, int)}.
+   *
+   * @param row         the row object
+   * @param columnIndex the column index of the value
+   * @return the row object
+   */
+  @Override
+  R passValue(R row, int columnIndex) {
+    if (scanning || (selectedColumns != null
+        && (columnIndex >= selectedColumns.length || !selectedColumns[columnIndex]))) {
+      return row;
+    }
+    if (fieldLength == 0) {
+      handleValue(row, rowIndex, columnIndex, buf, sliceStart, sliceEnd - sliceStart);
+    } else {
+      flushSlice();
+      handleValue(row, rowIndex, columnIndex, fieldByteBuffer, 0, fieldLength);
+    }
+    return row;
+  }
+
+  @Override
+  void passHeaderValue(R row, int columnIndex, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    handleValue(row, rowIndex, columnIndex, ByteBuffer.wrap(bytes), 0, bytes.length);
+  }
+
+  @Override
+  void copyToField(int from, int to) {
+    int len = to - from;
+    ensureFieldBufferCapacity(fieldLength + len);
+    if (array != null) {
+      System.arraycopy(array, arrayOffset + from, fieldBuffer, fieldLength, len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        fieldBuffer[fieldLength + i] = buf.get(from + i);
+      }
+    }
+    fieldLength += len;
+  }
+
+  @Override
+  void appendToField(int unit) {
+    ensureFieldBufferCapacity(fieldLength + 1);
+    fieldBuffer[fieldLength++] = (byte) unit;
+  }
+
+  @Override
+  String fieldToString() {
+    return decode(fieldByteBuffer, 0, fieldLength);
+  }
+
+  private void ensureFieldBufferCapacity(int capacity) {
+    if (fieldBuffer.length < capacity) {
+      fieldBuffer = Arrays.copyOf(fieldBuffer, Math.max(capacity, fieldBuffer.length * 2));
+      fieldByteBuffer = ByteBuffer.wrap(fieldBuffer);
+    }
+  }
+
+  /**
+   * Reads the next window of the input.
+   *
+   * @return true if more than one byte read;
+   * @throws IOException
+   */
+  @Override
+  boolean fill() throws IOException {
+    if (capturing) {
+      captureBytes(limit);
+    }
+    long consumed = bufferBase + limit;
+    ByteBuffer window = in.nextWindow();
+    if (window == null) {
+      bufferBase = consumed;
+      nextIndex = limit = 0;
+      captureFrom = 0;
+      return false;
+    }
+    buf = window;
+    if (window.hasArray()) {
+      array = window.array();
+      arrayOffset = window.arrayOffset();
+    } else {
+      array = null;
+      arrayOffset = 0;
+    }
+    nextIndex = window.position();
+    limit = window.limit();
+    bufferBase = consumed - nextIndex;
+    captureFrom = nextIndex;
+    return true;
+  }
+
+  /**
+   * Copies the bytes in {@link #buf} up to the specified index to {@link #captureBuffer}.
+   *
+   * @param to the end index in {@link #buf}, exclusive
+   */
+  private void captureBytes(int to) {
+    to = Math.min(to, limit);
+    int len = to - captureFrom;
+    if (len > 0) {
+      if (captureBuffer == null) {
+        captureBuffer = new byte[Math.max(len, INITIAL_FIELD_BUFFER_SIZE)];
+      } else if (captureBuffer.length < captureLength + len) {
+        captureBuffer = Arrays.copyOf(captureBuffer,
+            Math.max(captureLength + len, captureBuffer.length * 2));
+      }
+      if (array != null) {
+        System.arraycopy(array, arrayOffset + captureFrom, captureBuffer, captureLength, len);
+      } else {
+        for (int i = 0; i < len; i++) {
+          captureBuffer[captureLength + i] = buf.get(captureFrom + i);
+        }
+      }
+      captureLength += len;
+    }
+    captureFrom = Math.max(captureFrom, to);
+  }
+
+  /**
+   * Checks to make sure that the stream has not been closed
+   */
+  @Override
+  void ensureOpen() throws IOException {
+    if (in == null) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  /**
+   * Sets up the input.
+   *
+   * @param in A ByteInput
+   */
+  protected void setupInput(ByteInput in) {
+    this.in = in;
+    this.buf = null;
+    this.array = null;
+    this.fieldBuffer = new byte[INITIAL_FIELD_BUFFER_SIZE];
+    this.fieldByteBuffer = ByteBuffer.wrap(fieldBuffer);
+    resetRows();
+  }
+
+  private static byte toByte(int c) {
+    if (c > 0x7F) {
+      throw new IllegalArgumentException("Not an ASCII character: " + (char) c);
+    }
+    return (byte) c;
+  }
+
+  /**
+   * Parses the raw bytes of rows read by another reader, and passes the values to the hooks of the
+   * reader.
+   */
+  private static final class BatchReader<R> extends AbstractByteCsvReader<R> {
+
+    private final AbstractByteCsvReader<R> parent;
+
+    BatchReader(AbstractByteCsvReader<R> parent) {
+      super(parent);
+      this.parent = parent;
+    }
+
+    @Override
+    protected R createNewRow(long rowIndex) {
+      return parent.createNewRow(rowIndex);
+    }
+
+    @Override
+    protected void handleValue(R row, long rowIndex, int columnIndex, ByteBuffer buffer, int offset,
+                               int length) {
+      parent.handleValue(row, rowIndex, columnIndex, buffer, offset, length);
+    }
+
+    @Override
+    protected void handleValue(R row, long rowIndex, int columnIndex, String value) {
+      parent.handleValue(row, rowIndex, columnIndex, value);
+    }
+
+    @Override
+    protected void handleLineSeparator(R row, long rowIndex, LineSeparator lineFeedCode) {
+      parent.handleLineSeparator(row, rowIndex, lineFeedCode);
+    }
+  }
+}
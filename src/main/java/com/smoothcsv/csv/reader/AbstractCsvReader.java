@@ -13,23 +13,20 @@
  */
 package com.smoothcsv.csv.reader;
 
+import java.io.CharArrayReader;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.UncheckedIOException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Spliterator;
-import java.util.Spliterators;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.smoothcsv.csv.prop.CsvProperties;
 import com.smoothcsv.csv.prop.LineSeparator;
-import com.smoothcsv.csv.prop.QuoteEscapeRule;
-import com.smoothcsv.csv.prop.QuoteEscapeStrategy;
 
 /**
  * Abstract CSV reader.
@@ -37,7 +34,7 @@ import com.smoothcsv.csv.prop.QuoteEscapeStrategy;
  * @param <R> The class that holds values of one row.
  * @author kohii
  */
-public abstract class AbstractCsvReader<R> implements Closeable {
+public abstract class AbstractCsvReader<R> extends RowParser<R> implements Closeable {
 
   /**
    * Default input-buffer size.
@@ -45,9 +42,9 @@ public abstract class AbstractCsvReader<R> implements Closeable {
   private static final int DEFAULT_CHAR_BUFFER_SIZE = 8192;
 
   /**
-   * Null character.
+   * Default maximum size the input-buffer grows to for long rows.
    */
-  private static final char NULL_CHARACTER = '\0';
+  private static final int DEFAULT_MAX_CHAR_BUFFER_SIZE = 1 << 20;
 
   /**
    * A character to separate each fields.
@@ -60,46 +57,73 @@ public abstract class AbstractCsvReader<R> implements Closeable {
   protected final char quote;
 
   /**
-   * A character to escape {@link #quote}. If this character equals {@link #NULL_CHARACTER},
+   * A character to escape {@link #quote}. If this character equals the null character,
    * {@link #quote} characters must be represented by a pair of {@link #quote} characters.
    */
   protected final char escape;
 
+  private Reader in;
+
   /**
-   * if true, characters outside the quotes are ignored.
+   * The input-buffer. {@link #bufferBase} is the number of characters read from {@link #in} before
+   * the characters in this buffer. When a row does not fit in this buffer, a larger buffer is
+   * allocated for the following characters.
    */
-  protected final boolean strictQuotes;
+  private char[] cb;
 
   /**
-   * if true, white space in front of a quote in a field is ignored.
+   * If not null, the characters read from {@link #cb} are copied to this buffer. The characters
+   * from {@link #captureFrom} in {@link #cb} have not been copied yet.
    */
-  protected final boolean ignoreLeadingWhiteSpace;
+  private char[] captureBuffer;
+  private int captureLength;
+  private int captureFrom;
 
   /**
-   * if true, lines that starts with <code>#</code> are skipped.
+   * The field buffer, which holds the characters of the value being read that are not in the range
+   * of {@link #cb} from {@link #sliceStart} to {@link #sliceEnd}. The buffer is kept between rows,
+   * so it grows only for a value longer than every value before.
    */
-  protected final boolean skipCommentLines;
+  private char[] fieldBuffer;
 
   /**
-   * if true, empty lines are skipped.
+   * filters[i] is the filter on the column i, or null if the column is not filtered.
+   * {@link #filterCount} is the number of the filtered columns.
    */
-  protected final boolean skipEmptyLines;
+  private ValueFilter[] filters;
+  private int filterCount;
 
   /**
-   * Maximum count of columns read by this reader.
+   * The state of the filters on the row being read. If {@link #staging} is true, the row has not
+   * been created yet, and the values of the selected columns are kept in {@link #stageBuffer}.
    */
-  private int minColumnCount;
+  private boolean rejected;
+  private int remainingFilters;
+  private boolean staging;
+  private char[] stageBuffer;
+  private int stageLength;
+  private int[] stageColumns, stageOffsets;
+  private int stageCount;
 
   /**
-   * Minimum count of columns read by this reader.
+   * The cache of the values created by {@link #handleValue(Object, long, int, char[], int, int)},
+   * or null if values are not cached.
    */
-  private int maxColumnCount;
+  private ValueCache valueCache;
 
-  private Reader in;
+  /**
+   * The number and the size of the buffers read ahead, and the buffers for the current Reader,
+   * which are created when the first characters are read.
+   */
+  private int readAheadBufferCount;
+  private int readAheadBufferSize;
+  private ReadAheadBuffers readAhead;
 
-  private char[] cb;
-  private int nChars, nextChar;
-  private int rowIndex;
+  /**
+   * The reader that finds the end of the complete rows for
+   * {@link #readRowsIn(char[], int, int, Consumer)}, which is created on the first call.
+   */
+  private AbstractCsvReader<R> scanner;
 
   /**
    * Constructs AbstractCsvReader.
@@ -109,231 +133,271 @@ public abstract class AbstractCsvReader<R> implements Closeable {
    * @param options    Options how to read the CSV
    */
   public AbstractCsvReader(Reader in, CsvProperties properties, CsvReadOption options) {
+    super(properties, options);
 
-    this.separator = properties.getDelimiter();
-    this.quote = properties.getQuoteChar();
-    QuoteEscapeRule quoteEscapeRule = properties.getQuoteEscapeRule();
-    this.escape = quoteEscapeRule.getStrategy() == QuoteEscapeStrategy.REPEAT_QUOTE_CHAR
-        ? NULL_CHARACTER
-        : quoteEscapeRule.getEscapeChar();
-
-    this.strictQuotes = options.isStrictQuotes();
-    this.ignoreLeadingWhiteSpace = options.isIgnoreLeadingWhiteSpace();
-    this.skipCommentLines = options.isSkipCommentLines();
-    this.skipEmptyLines = options.isSkipEmptyLines();
+    this.separator = (char) separatorUnit;
+    this.quote = (char) quoteUnit;
+    this.escape = (char) escapeUnit;
 
     setupReader(in);
   }
 
   /**
-   * @return Current row index.
+   * Constructs a reader that parses the raw text of the rows that another reader reads next. The
+   * text must be given by {@link #setText(char[], int, int)} before reading any row.
+   *
+   * @param parent The reader that reads the text
    */
-  public int getRowIndex() {
-    return rowIndex;
+  private AbstractCsvReader(AbstractCsvReader<R> parent) {
+    super(parent);
+
+    this.separator = parent.separator;
+    this.quote = parent.quote;
+    this.escape = parent.escape;
+
+    setupReader(new CharArrayReader(new char[0]));
+    continueRows(parent);
+    this.filters = parent.filters;
+    this.filterCount = parent.filterCount;
   }
 
   /**
-   * @return Maximum number of columns that read by this reader
+   * Sets the text to parse. When the reader reaches the end of the text, it reads the following
+   * characters from its Reader.
+   *
+   * @param text   The characters of the rows
+   * @param offset The position of the first character in the text
+   * @param length The number of characters
    */
-  public int getMaxColumnCount() {
-    return maxColumnCount;
+  void setText(char[] text, int offset, int length) {
+    // the offset of the first character is the current position in the input
+    this.bufferBase += nextIndex - offset;
+    this.cb = text;
+    this.limit = offset + length;
+    this.nextIndex = offset;
   }
 
   /**
-   * @return Minimum number of columns that read by this reader
+   * Adds a filter on a column. A row is read only if every filter accepts the value in the column.
+   * Rows that do not have the column are skipped.
+   * <p>
+   * The filters are tested on the characters of the values while parsing. When a filter does not
+   * accept a row, the rest of the row is skipped without keeping the characters, and
+   * {@link #createNewRow(long)} is not called for the row. The header row of
+   * {@link ColumnSelection#names(String...)} is not filtered. Skipped rows still count toward
+   * {@link #getRowIndex()}.
+   * </p>
+   *
+   * @param columnIndex The index of the column
+   * @param filter      The filter
    */
-  public int getMinColumnCount() {
-    return minColumnCount;
+  public void addFilter(int columnIndex, ValueFilter filter) {
+    if (columnIndex < 0) {
+      throw new IllegalArgumentException("Negative column index: " + columnIndex);
+    }
+    Objects.requireNonNull(filter);
+    // copy the array so that readers parsing batches for rows() keep their filters
+    ValueFilter[] newFilters = filters == null
+        ? new ValueFilter[columnIndex + 1]
+        : Arrays.copyOf(filters, Math.max(filters.length, columnIndex + 1));
+    if (newFilters[columnIndex] == null) {
+      newFilters[columnIndex] = filter;
+      filterCount++;
+    } else {
+      newFilters[columnIndex] = newFilters[columnIndex].and(filter);
+    }
+    filters = newFilters;
   }
 
   /**
-   * Reads values in one row.
+   * Sets the cache of {@link String} values. The default implementation of
+   * {@link #handleValue(Object, long, int, char[], int, int)} then returns the same instance for
+   * equal values in a column, which saves memory when a column has a few distinct values.
    *
-   * @return Object containing the values of the row, or null if the end of the stream has been reached
+   * @param valueCache The cache, or null not to cache values
+   */
+  public void setValueCache(ValueCache valueCache) {
+    this.valueCache = valueCache;
+  }
+
+  /**
+   * @return The cache of {@link String} values, or null if values are not cached
+   */
+  public ValueCache getValueCache() {
+    return valueCache;
+  }
+
+  /**
+   * Makes the reader read characters ahead on a background thread, which fills the next buffers
+   * while the rows in the current buffer are parsed, so that waiting for the Reader overlaps
+   * parsing. The buffers are allocated once and reused. This pays off for a Reader that blocks,
+   * such as a Reader of a file or a socket, and must be called before reading any row. The
+   * thread is stopped when the reader is closed.
+   *
+   * @param bufferCount The number of buffers filled ahead, or 0 to read on the calling thread
+   * @param bufferSize  The number of characters of each buffer
+   * @throws IllegalStateException If characters have been read
+   */
+  public void setReadAhead(int bufferCount, int bufferSize) {
+    if (bufferCount < 0) {
+      throw new IllegalArgumentException("bufferCount is negative");
+    }
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("bufferSize must be positive");
+    }
+    if (bufferBase != 0 || limit != 0 || readAhead != null) {
+      throw new IllegalStateException("Characters have been read");
+    }
+    this.readAheadBufferCount = bufferCount;
+    this.readAheadBufferSize = bufferSize;
+  }
+
+  /**
+   * Reads the raw text of the next rows without creating row objects, and returns a spliterator
+   * that parses the text with a copy of this reader.
+   *
+   * @param maxRows The maximum number of rows to read
+   * @return the spliterator, or null if the end of the stream has been reached
    * @throws IOException If an I/O error occurs
    */
-  public R readRow() throws IOException {
+  private RowSpliterator<R> readBatch(int maxRows) throws IOException {
     ensureOpen();
-    if (nextChar >= nChars) {
-      readCharactersToBuffer();
+    AbstractCsvReader<R> reader = new BatchReader<>(this);
+    int rowCount;
+    captureBuffer = new char[INITIAL_FIELD_BUFFER_SIZE];
+    captureLength = 0;
+    captureFrom = nextIndex;
+    char[] text;
+    int length;
+    try {
+      rowCount = scanRows(maxRows);
+      captureCharacters(nextIndex);
+    } finally {
+      text = captureBuffer;
+      length = captureLength;
+      captureBuffer = null;
     }
-    if (nextChar >= nChars) {
-      // EOF
+    if (rowCount == 0) {
       return null;
     }
-    if (rowIndex == 0 && cb[0] == 0xFEFF) {
-      // if the first character equals UTF-8 BOM, we skip the character.
-      nextChar++;
-    }
-    if (skipCommentLines && cb[nextChar] == '#') {
-      // if the first character of the line equals '#', we skip the line.
-      skipRow();
-      return readRow();
-    }
-    StringBuilder sb = new StringBuilder(128);
-    boolean isEmptyLine = cb[nextChar] == '\n' || cb[nextChar] == '\r';
-    R rowData = createNewRow(rowIndex);
-    LineSeparator lineSeparator = null;
-    boolean inQuotes = false;
-    boolean inField = false;
-    boolean skipNext = false;
-    int columnCount = 0;
-    char prev, c = NULL_CHARACTER, next = cb[nextChar];
-    int i = nextChar;
-    for (; i < nChars; i++) {
-      prev = c;
-      c = next;
-      if (i + 1 < nChars) {
-        next = cb[i + 1];
-      } else {
-        if (readCharactersToBuffer()) {
-          next = cb[nextChar];
-          i = nextChar - 1;
-        } else {
-          next = NULL_CHARACTER;
-        }
+    reader.setText(text, 0, length);
+    return reader.spliterator(rowCount);
+  }
+
+  /**
+   * Reads the rows in the specified text, and passes them to the action. The Reader of this reader
+   * must throw {@link IncompleteTextException} if more characters are needed before the end of the
+   * input. The rows are then read up to the row that is not complete in the text, and this reader
+   * is left at the beginning of the row. The next text must start with the row.
+   * <p>
+   * The end of the complete rows is found first by a scanner that calls no hook, so the hooks are
+   * called only for complete rows. The scanner keeps its state in the row that is not complete, and
+   * resumes from where it stopped on the next call, so each character is scanned once.
+   * </p>
+   *
+   * @param text   The characters of the rows
+   * @param offset The position of the first character in the text
+   * @param length The number of characters
+   * @param action The action to perform for each row
+   * @return The position in the text of the beginning of the row that is not complete, or -1 if
+   * the end of the input has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  @SuppressWarnings("unchecked")
+  int readRowsIn(char[] text, int offset, int length, Consumer<? super R> action)
+      throws IOException {
+    if (scanner == null) {
+      scanner = new BatchReader<>(this);
+      scanner.in = in;
+      scanner.suspendable = true;
+    }
+    setText(text, offset, length);
+    scanner.setText(text, offset, length);
+    // the offset of the end of the complete rows, or -1 if the end of the input has been reached
+    long end = 0;
+    scanner.scanning = true;
+    try {
+      do {
+        end = scanner.bufferBase + scanner.nextIndex;
+      } while (scanner.parseRow() != null);
+      end = -1;
+    } catch (IncompleteTextException e) {
+      // the scanner goes back to the beginning of the row, where the next text starts
+      scanner.nextIndex = (int) (end - scanner.bufferBase);
+      if (end == 0) {
+        // the BOM is checked again with the first row
+        scanner.bomChecked = false;
       }
-      if (skipNext) {
-        skipNext = false;
-        continue;
+    } finally {
+      scanner.scanning = false;
+    }
+    for (; ; ) {
+      if (end >= 0 && bufferBase + nextIndex >= end) {
+        return (int) (end - bufferBase);
       }
-      if (c == this.escape) {
-        if (isNextCharacterEscapable(next, inQuotes || inField)) {
-          sb.append(next);
-          skipNext = true;
-        }
-      } else if (c == quote) {
-        if (isNextCharacterEscapedQuote(next, inQuotes || inField)) {
-          sb.append(next);
-          skipNext = true;
-        } else {
-
-          // the tricky case of an embedded quote in the middle: a,bc"d"ef,g
-          if (!inQuotes && !strictQuotes) {
-            if (prev != NULL_CHARACTER // not on the beginning of the line
-                && prev != this.separator // not at the beginning of an escape sequence
-                && (next != '\r' && next != '\n' && next != this.separator) // not at the end of an escape sequence
-            ) {
-              if (ignoreLeadingWhiteSpace && sb.length() > 0 && isAllWhiteSpace(sb)) {
-                sb.setLength(0); // discard white space leading up to quote
-              } else {
-                sb.append(c);
-                continue;
-              }
-            }
-          }
-
-          inQuotes = !inQuotes;
-        }
-        inField = !inField;
-      } else if (c == separator && !inQuotes) {
-        String s = sb.length() == 0 ? "" : sb.toString();
-        handleValue(rowData, rowIndex, columnCount++, s);
-        sb.setLength(0); // start work on next token
-        inField = false;
-      } else if (c == '\r' && !inQuotes) {
-        if (next == '\n') {
-          i++;
-          lineSeparator = LineSeparator.CRLF;
-        } else {
-          lineSeparator = LineSeparator.CR;
-        }
-        break; // EOL
-      } else if (c == '\n' && !inQuotes) {
-        lineSeparator = LineSeparator.LF;
-        break; // EOL
-      } else {
-        if (!strictQuotes || inQuotes) {
-          sb.append(c);
-          inField = true;
-        }
+      Object row = parseRow();
+      if (row == null) {
+        return -1;
       }
-    }
-
-    nextChar = i + 1;
-    if (isEmptyLine) {
-      if (skipEmptyLines) {
-        return readRow();
-      } else {
-        // keep row empty
+      if (row != NO_ROW) {
+        action.accept((R) row);
       }
-    } else {
-      String s = sb.length() == 0 ? "" : sb.toString();
-      handleValue(rowData, rowIndex, columnCount++, s);
     }
-
-    handleLineSeparator(rowData, rowIndex, lineSeparator);
-
-    minColumnCount = minColumnCount == -1 ? columnCount : Math.min(minColumnCount, columnCount);
-    maxColumnCount = maxColumnCount == -1 ? columnCount : Math.max(maxColumnCount, columnCount);
-    rowIndex++;
-
-    return rowData;
   }
 
   /**
-   * Skips rows.
+   * Returns the position of this reader, from which another reader can resume reading by
+   * {@link #resume(CsvCheckpoint)}. This must be called between rows, not while a row is being
+   * read.
    *
-   * @param n The number of rows to skip
-   * @return The number of rows actually skipped
-   * @throws IOException
+   * @return The checkpoint, whose offset is the number of characters before the next row
    */
-  public int skipRows(int n) throws IOException {
-    if (n < 0) {
-      throw new IllegalArgumentException("skipLines value is negative");
-    }
-    int skiped = 0;
-    for (int i = 0; i < n; i++) {
-      if (skipRow()) {
-        skiped++;
-      } else {
-        break;
-      }
-    }
-    return skiped;
+  public CsvCheckpoint checkpoint() {
+    return checkpointAt(false);
   }
 
   /**
-   * Skips one row.
+   * Resumes reading from a checkpoint taken by a reader of the same input. The characters up to
+   * the checkpoint are skipped without being parsed, and the next row read is the row at the
+   * checkpoint. The reader must have the same properties and options as the reader the checkpoint
+   * was taken by, and must not have read past the checkpoint.
    *
-   * @return True if a row actually skipped.
-   * @throws IOException
+   * @param checkpoint The checkpoint
+   * @throws IOException If an I/O error occurs, or the input ends before the checkpoint
    */
-  private boolean skipRow() throws IOException {
+  public void resume(CsvCheckpoint checkpoint) throws IOException {
     ensureOpen();
-    if (nextChar >= nChars) {
-      readCharactersToBuffer();
+    if (checkpoint.isByteOffset()) {
+      throw new IllegalArgumentException("The checkpoint has been taken by a byte reader");
     }
-    if (nextChar >= nChars) {
-      // EOF
-      return false;
+    long offset = checkpoint.getOffset();
+    long position = bufferBase + nextIndex;
+    if (offset < position) {
+      throw new IllegalStateException("The reader has read past the checkpoint");
     }
-    do {
-      boolean isPrevCR = false;
-      for (int i = nextChar; i < nChars; i++) {
-        char c = cb[i];
-        if (isPrevCR) {
-          if (c == '\n') {
-            nextChar = i + 1;
-            rowIndex++;
-            return true;
-          } else {
-            nextChar = i;
-            rowIndex++;
-            return true;
-          }
-        } else {
-          if (c == '\r') {
-            isPrevCR = true;
-          } else if (c == '\n') {
-            nextChar = i + 1;
-            rowIndex++;
-            return true;
-          }
+    if (offset <= bufferBase + limit) {
+      nextIndex = (int) (offset - bufferBase);
+    } else if (readAheadBufferCount > 0) {
+      // the Reader is read by the read-ahead thread
+      do {
+        if (!fill()) {
+          throw new EOFException("The input ends before the checkpoint");
+        }
+      } while (offset > bufferBase + limit);
+      nextIndex = (int) (offset - bufferBase);
+    } else {
+      long remaining = offset - bufferBase - limit;
+      while (remaining > 0) {
+        long skipped = in.skip(remaining);
+        if (skipped <= 0) {
+          throw new EOFException("The input ends before the checkpoint");
         }
+        remaining -= skipped;
       }
-    } while (readCharactersToBuffer());
-    return false;
+      bufferBase = offset;
+      nextIndex = limit = 0;
+    }
+    restore(checkpoint);
   }
 
   @Override
@@ -342,28 +406,18 @@ public abstract class AbstractCsvReader<R> implements Closeable {
       return;
     }
     try {
+      if (readAhead != null) {
+        readAhead.stop();
+      }
       in.close();
     } finally {
+      readAhead = null;
       in = null;
       cb = null;
+      fieldBuffer = null;
     }
   }
 
-  /**
-   * Reads all CSV text and returns list of rows.
-   *
-   * @return
-   * @throws IOException
-   */
-  public List<R> readAll() throws IOException {
-    List<R> rows = new ArrayList<>();
-    R r;
-    while ((r = readRow()) != null) {
-      rows.add(r);
-    }
-    return rows;
-  }
-
   /**
    * Returns a {@code Stream}, the elements of which are lines read from this {@code CsvReader}. The
    * {@link Stream} is lazily populated, i.e., read only occurs during the
@@ -378,6 +432,13 @@ public abstract class AbstractCsvReader<R> implements Closeable {
    * be at a specific position from which to read the next character or line.
    * </p>
    * <p>
+   * If the stream is parallel, this reader reads the raw text of batches of rows, and the batches
+   * are parsed concurrently by copies of this reader. {@link #createNewRow(long)},
+   * {@link #handleValue(Object, long, int, char[], int, int)} and
+   * {@link #handleLineSeparator(Object, long, LineSeparator)} of this reader may then be called from
+   * multiple threads at the same time.
+   * </p>
+   * <p>
    * If an {@link IOException} is thrown when accessing the underlying {@code BufferedReader}, it is
    * wrapped in an {@link UncheckedIOException} which will be thrown from the {@code Stream} method
    * that caused the read to take place. This method will return a Stream if invoked on a
@@ -388,37 +449,27 @@ public abstract class AbstractCsvReader<R> implements Closeable {
    * {@code BufferedReader}
    */
   public Stream<R> rows() {
-    Iterator<R> iter = new Iterator<R>() {
-      R nextLine = null;
+    return StreamSupport.stream(spliterator(Long.MAX_VALUE), false);
+  }
 
+  /**
+   * Returns a spliterator over the rows read from this reader.
+   *
+   * @param rowCount The number of rows, or {@link Long#MAX_VALUE} if unknown
+   * @return the spliterator
+   */
+  private RowSpliterator<R> spliterator(long rowCount) {
+    return new RowSpliterator<R>(rowCount) {
       @Override
-      public boolean hasNext() {
-        if (nextLine != null) {
-          return true;
-        } else {
-          try {
-            nextLine = readRow();
-            return (nextLine != null);
-          } catch (IOException e) {
-            throw new UncheckedIOException(e);
-          }
-        }
+      R readRow() throws IOException {
+        return AbstractCsvReader.this.readRow();
       }
 
       @Override
-      public R next() {
-        if (nextLine != null || hasNext()) {
-          R line = nextLine;
-          nextLine = null;
-          return line;
-        } else {
-          throw new NoSuchElementException();
-        }
+      RowSpliterator<R> readBatch(int maxRows) throws IOException {
+        return AbstractCsvReader.this.readBatch(maxRows);
       }
     };
-    return StreamSupport.stream(
-        Spliterators.spliteratorUnknownSize(iter, Spliterator.ORDERED | Spliterator.NONNULL),
-        false);
   }
 
   /**
@@ -428,23 +479,76 @@ public abstract class AbstractCsvReader<R> implements Closeable {
     return DEFAULT_CHAR_BUFFER_SIZE;
   }
 
+  /**
+   * Returns the maximum size of the input-buffer. While a row is longer than the input-buffer, the
+   * input-buffer is doubled up to this size, so that a large value is read in fewer and larger
+   * chunks. The input-buffer is not grown when characters are read ahead.
+   *
+   * @return Maximum input-buffer size
+   */
+  protected int maxCharBufferSize() {
+    return DEFAULT_MAX_CHAR_BUFFER_SIZE;
+  }
+
   /**
    * Creates and returns object that holds values of one row.
    *
    * @param rowIndex current row index
    * @return Object that holds values of one row.
    */
-  protected abstract R createNewRow(int rowIndex);
+  @Override
+  protected abstract R createNewRow(long rowIndex);
 
   /**
    * Handles a value.
+   * <p>
+   * The value is passed as a range of characters to avoid copying it into a {@link String}. If the
+   * value lies in the input-buffer without any escape sequence, the range points into the
+   * input-buffer directly. The characters are valid only during this call and must not be
+   * modified.
+   * </p>
+   * <p>
+   * If {@link CsvReadOption#getColumns()} is specified, only the values in the selected columns
+   * are passed. The column index is the index of the column in the row.
+   * </p>
+   * <p>
+   * The default implementation creates a {@link String}, or takes it from the cache set by
+   * {@link #setValueCache(ValueCache)}, and calls {@link #handleValue(Object, long, int, String)}.
+   * Subclasses that do not need {@link String} values should override this method too, and
+   * implement {@link #handleValue(Object, long, int, String)} in terms of it.
+   * </p>
+   *
+   * @param row
+   * @param rowIndex    current row index
+   * @param columnIndex
+   * @param buffer      the buffer that holds the characters of the value
+   * @param offset      the offset of the value in the buffer
+   * @param length      the length of the value
+   */
+  protected void handleValue(R row, long rowIndex, int columnIndex, char[] buffer, int offset,
+                             int length) {
+    String value;
+    if (valueCache != null) {
+      value = valueCache.get(columnIndex, buffer, offset, length);
+    } else {
+      value = length == 0 ? "" : new String(buffer, offset, length);
+    }
+    handleValue(row, rowIndex, columnIndex, value);
+  }
+
+  /**
+   * Handles a value.
+   * <p>
+   * This method is called by {@link #handleValue(Object, long, int, char[], int, int)} unless it is
+   * overridden.
+   * </p>
    *
    * @param row
    * @param rowIndex    current row index
    * @param columnIndex
    * @param value
    */
-  protected abstract void handleValue(R row, int rowIndex, int columnIndex, String value);
+  protected abstract void handleValue(R row, long rowIndex, int columnIndex, String value);
 
   /**
    * Handles a line feed character.
@@ -453,71 +557,287 @@ public abstract class AbstractCsvReader<R> implements Closeable {
    * @param rowIndex     current row index
    * @param lineFeedCode
    */
-  protected void handleLineSeparator(R row, int rowIndex, LineSeparator lineFeedCode) {
+  @Override
+  protected void handleLineSeparator(R row, long rowIndex, LineSeparator lineFeedCode) {
     // do nothing
   }
 
   /**
-   * precondition: the current character is an escape
+   * Creates the row object unless the row is staged or scanned.
+   * <p>
+   * If filters are added, the row is staged, and it is created after the filters accept the row.
+   * </p>
    *
-   * @param next     the next character
-   * @param inQuotes true if the current context is quoted
-   * @return true if the following character is a quote
+   * @return the row object, or null if the row is staged or scanned
    */
-  private boolean isNextCharacterEscapable(char next, boolean inQuotes) {
-    return inQuotes // we are in quotes, therefore there can be escaped quotes in here.
-        && next != NULL_CHARACTER // there is indeed another character to check.inQuotes // we are
-        // in quotes, therefore there can be escaped quotes in here.
-        && next != NULL_CHARACTER // there is indeed another character to check.
-        && (next == quote || next == this.escape);
+  @Override
+  R startRow() {
+    rejected = false;
+    remainingFilters = filters == null || headerPending ? 0 : filterCount;
+    staging = remainingFilters > 0 && !scanning;
+    stageCount = stageLength = 0;
+    return scanning || staging ? null : createNewRow(rowIndex);
   }
 
   /**
-   * precondition: the current character is a quote or an escape
+   * @return true if a filter has not accepted the row, or the row does not have a filtered column
+   */
+  @Override
+  boolean isRowRejected() {
+    return rejected || remainingFilters > 0;
+  }
+
+  /**
+   * Passes the value being read to {@link #handleValue(Object, long, int, char[], int, int)}.
+   * <p>
+   * If the row is staged, the value is kept until the filters accept the row. When the last filter
+   * accepts the row, the row is created and the staged values are passed.
+   * </p>
    *
-   * @param next     the next character
-   * @param inQuotes true if the current context is quoted
-   * @return true if the following character is a quote
+   * @param row         the row object, or null if the row is staged
+   * @param columnIndex the column index of the value
+   * @return the row object, or null if the row is staged
    */
-  private boolean isNextCharacterEscapedQuote(char next, boolean inQuotes) {
-    return inQuotes // we are in quotes, therefore there can be escaped quotes in here.
-        && next == quote;
+  @Override
+  R passValue(R row, int columnIndex) {
+    if (rejected) {
+      return row;
+    }
+    char[] buffer;
+    int offset, length;
+    if (fieldLength == 0) {
+      buffer = cb;
+      offset = sliceStart;
+      length = sliceEnd - sliceStart;
+    } else {
+      flushSlice();
+      buffer = fieldBuffer;
+      offset = 0;
+      length = fieldLength;
+    }
+    ValueFilter filter = getFilter(columnIndex);
+    if (filter != null) {
+      if (!filter.accept(buffer, offset, length)) {
+        rejected = true;
+        return row;
+      }
+      remainingFilters--;
+    }
+    if (scanning) {
+      return row;
+    }
+    boolean selected = selectedColumns == null
+        || (columnIndex < selectedColumns.length && selectedColumns[columnIndex]);
+    if (staging) {
+      if (selected) {
+        stageValue(columnIndex, buffer, offset, length);
+      }
+      if (remainingFilters > 0) {
+        return row;
+      }
+      // all filters have accepted the row
+      staging = false;
+      row = createNewRow(rowIndex);
+      for (int i = 0; i < stageCount; i++) {
+        handleValue(row, rowIndex, stageColumns[i], stageBuffer, stageOffsets[i],
+            stageOffsets[i + 1] - stageOffsets[i]);
+      }
+    } else if (selected) {
+      handleValue(row, rowIndex, columnIndex, buffer, offset, length);
+    }
+    return row;
+  }
+
+  /**
+   * Keeps a value of the staged row.
+   *
+   * @param columnIndex the column index of the value
+   * @param buffer      the buffer that holds the characters of the value
+   * @param offset      the offset of the value in the buffer
+   * @param length      the length of the value
+   */
+  private void stageValue(int columnIndex, char[] buffer, int offset, int length) {
+    if (stageBuffer == null) {
+      stageBuffer = new char[INITIAL_FIELD_BUFFER_SIZE];
+      stageColumns = new int[8];
+      stageOffsets = new int[8];
+    }
+    if (stageColumns.length <= stageCount + 1) {
+      stageColumns = Arrays.copyOf(stageColumns, stageColumns.length * 2);
+      stageOffsets = Arrays.copyOf(stageOffsets, stageOffsets.length * 2);
+    }
+    if (stageBuffer.length < stageLength + length) {
+      stageBuffer = Arrays.copyOf(stageBuffer,
+          Math.max(stageLength + length, stageBuffer.length * 2));
+    }
+    System.arraycopy(buffer, offset, stageBuffer, stageLength, length);
+    stageColumns[stageCount] = columnIndex;
+    stageOffsets[stageCount] = stageLength;
+    stageLength += length;
+    stageOffsets[++stageCount] = stageLength;
+  }
+
+  private ValueFilter getFilter(int columnIndex) {
+    return filters != null && columnIndex < filters.length ? filters[columnIndex] : null;
+  }
+
+  @Override
+  void passHeaderValue(R row, int columnIndex, String value) {
+    char[] chars = value.toCharArray();
+    handleValue(row, rowIndex, columnIndex, chars, 0, chars.length);
   }
 
   /**
-   * precondition: sb.length() > 0
+   * Returns whether the characters of a value in the specified column need not be kept.
    *
-   * @param sb A sequence of characters to examine
-   * @return true if every character in the sequence is whitespace
+   * @param columnIndex the column index
+   * @return true if the column is not selected, or a filter has not accepted the row
    */
-  private boolean isAllWhiteSpace(CharSequence sb) {
-    boolean result = true;
-    for (int i = 0; i < sb.length(); i++) {
-      char c = sb.charAt(i);
+  @Override
+  boolean isValueSkippable(int columnIndex) {
+    if (ignoreLeadingWhiteSpace) {
+      // ignoreLeadingWhiteSpace needs the characters to handle a quote
+      return false;
+    }
+    if (rejected) {
+      return true;
+    }
+    if (getFilter(columnIndex) != null) {
+      return false;
+    }
+    return super.isValueSkippable(columnIndex);
+  }
+
+  @Override
+  int unitAt(int index) {
+    return cb[index];
+  }
 
-      if (!Character.isWhitespace(c)) {
-        return false;
+  @Override
+  int bomLength(int index) {
+    return cb[index] == 0xFEFF ? 1 : 0;
+  }
+
+  @Override
+  int scanUnquoted(int from) {
+    char[] cb = this.cb;
+    char separator = this.separator, quote = this.quote, escape = this.escape;
+    int i = from, n = limit;
+    while (i < n) {
+      char c = cb[i];
+      if (c == separator || c == quote || c == escape || c == '\n' || c == '\r') {
+        break;
       }
+      i++;
+    }
+    return i;
+  }
+
+  @Override
+  int scanQuoted(int from) {
+    char[] cb = this.cb;
+    char quote = this.quote, escape = this.escape;
+    int i = from, n = limit;
+    while (i < n) {
+      char c = cb[i];
+      if (c == quote || c == escape) {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  @Override
+  void copyToField(int from, int to) {
+    int len = to - from;
+    ensureFieldBufferCapacity(fieldLength + len);
+    System.arraycopy(cb, from, fieldBuffer, fieldLength, len);
+    fieldLength += len;
+  }
+
+  @Override
+  void appendToField(int unit) {
+    ensureFieldBufferCapacity(fieldLength + 1);
+    fieldBuffer[fieldLength++] = (char) unit;
+  }
+
+  @Override
+  String fieldToString() {
+    return new String(fieldBuffer, 0, fieldLength);
+  }
+
+  private void ensureFieldBufferCapacity(int capacity) {
+    if (fieldBuffer.length < capacity) {
+      fieldBuffer = Arrays.copyOf(fieldBuffer, Math.max(capacity, fieldBuffer.length * 2));
     }
-    return result;
   }
 
   /**
-   * Fills the input buffer, taking the mark into account if it is valid.
+   * Fills the input buffer. If the row being read started in a previous buffer and is longer than
+   * the buffer, a larger buffer is allocated.
    *
    * @return true if more than one character read;
    * @throws IOException
    */
-  private boolean readCharactersToBuffer() throws IOException {
-    nChars = in.read(cb);
-    nextChar = 0;
-    return nChars >= 0;
+  @Override
+  boolean fill() throws IOException {
+    if (captureBuffer != null) {
+      captureCharacters(limit);
+      captureFrom = 0;
+    }
+    char[] buffer = cb;
+    if (limit > 0 && rowStart < bufferBase && bufferBase + limit - rowStart >= cb.length
+        && cb.length < maxCharBufferSize() && readAheadBufferCount == 0) {
+      // the row started in a previous buffer, and is longer than the buffer
+      buffer = new char[(int) Math.min((long) cb.length * 2, maxCharBufferSize())];
+    }
+    long base = bufferBase + limit;
+    int n;
+    if (readAheadBufferCount > 0) {
+      if (readAhead == null) {
+        readAhead = new ReadAheadBuffers(in, readAheadBufferCount, readAheadBufferSize);
+      }
+      // the previous buffer is filled again by the thread, so it must not be used after this
+      n = readAhead.next();
+      if (n >= 0) {
+        cb = readAhead.chars();
+      }
+    } else {
+      n = in.read(buffer);
+      cb = buffer;
+    }
+    // not updated until the read succeeds, since the Reader of readRowsIn throws to end the text
+    bufferBase = base;
+    nextIndex = 0;
+    limit = Math.max(n, 0);
+    return n >= 0;
+  }
+
+  /**
+   * Copies the characters in {@link #cb} up to the specified position to {@link #captureBuffer}.
+   *
+   * @param to the end position in {@link #cb}, exclusive
+   */
+  private void captureCharacters(int to) {
+    to = Math.min(to, limit);
+    int len = to - captureFrom;
+    if (len > 0) {
+      if (captureBuffer.length < captureLength + len) {
+        captureBuffer = Arrays.copyOf(captureBuffer,
+            Math.max(captureLength + len, captureBuffer.length * 2));
+      }
+      System.arraycopy(cb, captureFrom, captureBuffer, captureLength, len);
+      captureLength += len;
+    }
+    captureFrom = Math.max(captureFrom, to);
   }
 
   /**
    * Checks to make sure that the stream has not been closed
    */
-  private void ensureOpen() throws IOException {
+  @Override
+  void ensureOpen() throws IOException {
     if (in == null) {
       throw new IOException("Stream closed");
     }
@@ -529,12 +849,49 @@ public abstract class AbstractCsvReader<R> implements Closeable {
    * @param in A Reader
    */
   protected void setupReader(Reader in) {
+    if (readAhead != null) {
+      readAhead.stop();
+      readAhead = null;
+    }
     this.in = in;
+    this.scanner = null;
     this.cb = new char[charBufferSize()];
-    this.nextChar = this.nChars = 0;
-    this.rowIndex = 0;
+    this.fieldBuffer = new char[INITIAL_FIELD_BUFFER_SIZE];
+    resetRows();
+  }
 
-    this.minColumnCount = -1;
-    this.maxColumnCount = -1;
+  /**
+   * Parses the raw text of rows read by another reader, and passes the values to the hooks of the
+   * reader.
+   */
+  private static final class BatchReader<R> extends AbstractCsvReader<R> {
+
+    private final AbstractCsvReader<R> parent;
+
+    BatchReader(AbstractCsvReader<R> parent) {
+      super(parent);
+      this.parent = parent;
+    }
+
+    @Override
+    protected R createNewRow(long rowIndex) {
+      return parent.createNewRow(rowIndex);
+    }
+
+    @Override
+    protected void handleValue(R row, long rowIndex, int columnIndex, char[] buffer, int offset,
+                               int length) {
+      parent.handleValue(row, rowIndex, columnIndex, buffer, offset, length);
+    }
+
+    @Override
+    protected void handleValue(R row, long rowIndex, int columnIndex, String value) {
+      parent.handleValue(row, rowIndex, columnIndex, value);
+    }
+
+    @Override
+    protected void handleLineSeparator(R row, long rowIndex, LineSeparator lineFeedCode) {
+      parent.handleLineSeparator(row, rowIndex, lineFeedCode);
+    }
   }
 }
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * A source of bytes read by {@link AbstractByteCsvReader}.
+ * <p>
+ * The bytes are supplied as a sequence of {@link ByteBuffer} windows. A window is valid until the
+ * next window is requested.
+ * </p>
+ *
+ * @author kohii
+ */
+public abstract class ByteInput implements Closeable {
+
+  /**
+   * Default size of the buffer to read bytes from streams and channels.
+   */
+  static final int DEFAULT_BYTE_BUFFER_SIZE = 65536;
+
+  /**
+   * Minimum number of bytes in the first window, so that a byte order mark can be detected.
+   */
+  static final int MIN_FIRST_WINDOW_SIZE = 3;
+
+  /**
+   * Default size of the windows to map a file.
+   */
+  static final int DEFAULT_MAP_WINDOW_SIZE = 1 << 28;
+
+  /**
+   * Returns the next window.
+   *
+   * @return A buffer whose remaining bytes are the next bytes of the input, or null if the end of
+   * the input has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  abstract ByteBuffer nextWindow() throws IOException;
+
+  /**
+   * Moves to the specified offset of the input. The next window starts at the offset.
+   *
+   * @param offset The offset from the beginning of the input
+   * @return false if this input does not support seeking
+   * @throws IOException If an I/O error occurs
+   */
+  boolean seek(long offset) throws IOException {
+    return false;
+  }
+
+  /**
+   * Returns the bytes in a range of the current window, which stay valid after the next windows
+   * are read.
+   *
+   * @param window The current window
+   * @param from   The start index in the window, inclusive
+   * @param to     The end index in the window, exclusive
+   * @return A view of the window whose position and limit are the range, or null if the window is
+   * filled again with the next bytes
+   */
+  ByteBuffer share(ByteBuffer window, int from, int to) {
+    return null;
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads bytes from the specified stream.
+   *
+   * @param in An InputStream
+   * @return ByteInput
+   */
+  public static ByteInput of(InputStream in) {
+    return of(in, DEFAULT_BYTE_BUFFER_SIZE);
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads bytes from the specified stream.
+   *
+   * @param in         An InputStream
+   * @param bufferSize The size of the buffer to read bytes
+   * @return ByteInput
+   */
+  public static ByteInput of(InputStream in, int bufferSize) {
+    Objects.requireNonNull(in);
+    return new StreamInput(in, checkBufferSize(bufferSize));
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads bytes from the specified channel.
+   *
+   * @param channel A ReadableByteChannel
+   * @return ByteInput
+   */
+  public static ByteInput of(ReadableByteChannel channel) {
+    return of(channel, DEFAULT_BYTE_BUFFER_SIZE);
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads bytes from the specified channel.
+   *
+   * @param channel    A ReadableByteChannel
+   * @param bufferSize The size of the buffer to read bytes
+   * @return ByteInput
+   */
+  public static ByteInput of(ReadableByteChannel channel, int bufferSize) {
+    Objects.requireNonNull(channel);
+    return new ChannelInput(channel, checkBufferSize(bufferSize));
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads the remaining bytes of the specified buffer. The bytes
+   * are read directly from the buffer without copying.
+   *
+   * @param buffer A ByteBuffer
+   * @return ByteInput
+   */
+  public static ByteInput of(ByteBuffer buffer) {
+    Objects.requireNonNull(buffer);
+    return new BufferInput(buffer);
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads the specified file through memory-mapped windows. The
+   * bytes are read directly from the mapped memory, and each window is unmapped as soon as the next
+   * window is mapped or the input is closed.
+   *
+   * @param path The path of the file
+   * @return ByteInput
+   * @throws IOException If an I/O error occurs opening the file
+   */
+  public static ByteInput map(Path path) throws IOException {
+    return map(path, DEFAULT_MAP_WINDOW_SIZE);
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads the specified file through memory-mapped windows.
+   *
+   * @param path       The path of the file
+   * @param windowSize The maximum number of bytes to map at once
+   * @return ByteInput
+   * @throws IOException If an I/O error occurs opening the file
+   * @see #map(Path)
+   */
+  public static ByteInput map(Path path, int windowSize) throws IOException {
+    checkBufferSize(windowSize);
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new MappedFileInput(channel, 0, channel.size(), windowSize, true);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a {@link ByteInput} that reads a range of the file through memory-mapped windows. The
+   * channel is not closed when the input is closed.
+   *
+   * @param channel    A FileChannel
+   * @param start      The offset of the range, inclusive
+   * @param end        The end of the range, exclusive
+   * @param windowSize The maximum number of bytes to map at once
+   * @return ByteInput
+   */
+  static ByteInput map(FileChannel channel, long start, long end, int windowSize) {
+    return new MappedFileInput(channel, start, end, windowSize, false);
+  }
+
+  private static int checkBufferSize(int bufferSize) {
+    if (bufferSize < MIN_FIRST_WINDOW_SIZE) {
+      throw new IllegalArgumentException("bufferSize must be at least " + MIN_FIRST_WINDOW_SIZE);
+    }
+    return bufferSize;
+  }
+
+  private static ByteBuffer range(ByteBuffer window, int from, int to) {
+    ByteBuffer range = window.duplicate();
+    range.limit(to);
+    range.position(from);
+    return range;
+  }
+
+  /**
+   * Reads bytes from an {@link InputStream}.
+   */
+  private static class StreamInput extends ByteInput {
+
+    private final InputStream in;
+    private final ByteBuffer window;
+    private boolean first = true;
+
+    StreamInput(InputStream in, int bufferSize) {
+      this.in = in;
+      this.window = ByteBuffer.wrap(new byte[bufferSize]);
+    }
+
+    @Override
+    ByteBuffer nextWindow() throws IOException {
+      byte[] array = window.array();
+      int n = in.read(array);
+      if (n < 0) {
+        return null;
+      }
+      if (first) {
+        first = false;
+        while (n < MIN_FIRST_WINDOW_SIZE) {
+          int r = in.read(array, n, array.length - n);
+          if (r < 0) {
+            break;
+          }
+          n += r;
+        }
+      }
+      window.limit(n).position(0);
+      return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads bytes from a {@link ReadableByteChannel}.
+   */
+  private static class ChannelInput extends ByteInput {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer window;
+    private boolean first = true;
+
+    /**
+     * The position of the channel at the beginning of the input, or -1 if it is unknown.
+     */
+    private long start = -1;
+
+    ChannelInput(ReadableByteChannel channel, int bufferSize) {
+      this.channel = channel;
+      this.window = ByteBuffer.allocate(bufferSize);
+    }
+
+    @Override
+    ByteBuffer nextWindow() throws IOException {
+      if (first && start < 0 && channel instanceof SeekableByteChannel) {
+        start = ((SeekableByteChannel) channel).position();
+      }
+      window.clear();
+      int minBytes = first ? MIN_FIRST_WINDOW_SIZE : 1;
+      first = false;
+      while (window.position() < minBytes) {
+        if (channel.read(window) < 0) {
+          break;
+        }
+      }
+      window.flip();
+      return window.hasRemaining() ? window : null;
+    }
+
+    @Override
+    boolean seek(long offset) throws IOException {
+      if (!(channel instanceof SeekableByteChannel)) {
+        return false;
+      }
+      SeekableByteChannel seekable = (SeekableByteChannel) channel;
+      if (start < 0) {
+        start = seekable.position();
+      }
+      seekable.position(start + offset);
+      first = offset == 0;
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Reads bytes from a {@link ByteBuffer}.
+   */
+  private static class BufferInput extends ByteInput {
+
+    private ByteBuffer source;
+    private ByteBuffer buffer;
+
+    BufferInput(ByteBuffer buffer) {
+      this.source = buffer.duplicate();
+      this.buffer = source.duplicate();
+    }
+
+    @Override
+    ByteBuffer nextWindow() {
+      ByteBuffer window = buffer;
+      buffer = null;
+      return window == null || !window.hasRemaining() ? null : window;
+    }
+
+    @Override
+    ByteBuffer share(ByteBuffer window, int from, int to) {
+      return range(window, from, to);
+    }
+
+    @Override
+    boolean seek(long offset) {
+      buffer = source.duplicate();
+      buffer.position((int) Math.min(source.position() + offset, source.limit()));
+      return true;
+    }
+
+    @Override
+    public void close() {
+      source = null;
+      buffer = null;
+    }
+  }
+
+  /**
+   * Reads bytes from a file through memory-mapped windows.
+   */
+  private static class MappedFileInput extends ByteInput {
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private final long end;
+    private final boolean closeChannel;
+    private long offset;
+    private MappedByteBuffer window;
+
+    /**
+     * if true, the current window is shared by {@link #share(ByteBuffer, int, int)}, and it is
+     * unmapped by the garbage collector instead of being unmapped when it is replaced.
+     */
+    private boolean windowShared;
+
+    MappedFileInput(FileChannel channel, long start, long end, int windowSize,
+                    boolean closeChannel) {
+      this.channel = channel;
+      this.windowSize = windowSize;
+      this.offset = start;
+      this.end = end;
+      this.closeChannel = closeChannel;
+    }
+
+    @Override
+    ByteBuffer nextWindow() throws IOException {
+      unmapWindow();
+      if (offset >= end) {
+        return null;
+      }
+      int length = (int) Math.min(windowSize, end - offset);
+      window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      offset += length;
+      return window;
+    }
+
+    @Override
+    ByteBuffer share(ByteBuffer window, int from, int to) {
+      windowShared = true;
+      return range(window, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The offset is a position in the file, as is the start of the range.
+     * </p>
+     */
+    @Override
+    boolean seek(long offset) {
+      unmapWindow();
+      this.offset = Math.min(offset, end);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        if (closeChannel) {
+          channel.close();
+        }
+      } finally {
+        unmapWindow();
+      }
+    }
+
+    private void unmapWindow() {
+      if (window != null && !windowShared) {
+        MappedBuffers.unmap(window);
+      }
+      window = null;
+      windowShared = false;
+    }
+  }
+
+}
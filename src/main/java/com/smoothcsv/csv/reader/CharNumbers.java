@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+/**
+ * Parses numbers from ranges of characters without creating a {@link String}.
+ *
+ * @author kohii
+ */
+final class CharNumbers {
+
+  /**
+   * Powers of ten that are exactly representable as double.
+   */
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+      1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * Maximum number of significant digits kept in a long while parsing a double.
+   */
+  private static final int MAX_MANTISSA_DIGITS = 18;
+
+  /**
+   * Maximum mantissa that is exactly representable as double.
+   */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  private CharNumbers() {
+  }
+
+  /**
+   * Parses an int in the same format as {@link Integer#parseInt(String)}.
+   *
+   * @param buffer the buffer that holds the characters
+   * @param offset the offset of the characters in the buffer
+   * @param length the number of the characters
+   * @return the int value
+   * @throws NumberFormatException If the characters are not an int
+   */
+  static int parseInt(char[] buffer, int offset, int length) {
+    long value = parseLong(buffer, offset, length);
+    if (value != (int) value) {
+      throw numberFormatException(buffer, offset, length);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Parses a long in the same format as {@link Long#parseLong(String)}.
+   *
+   * @param buffer the buffer that holds the characters
+   * @param offset the offset of the characters in the buffer
+   * @param length the number of the characters
+   * @return the long value
+   * @throws NumberFormatException If the characters are not a long
+   */
+  static long parseLong(char[] buffer, int offset, int length) {
+    int i = offset, end = offset + length;
+    boolean negative = false;
+    if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+      negative = buffer[i] == '-';
+      i++;
+    }
+    if (i == end) {
+      throw numberFormatException(buffer, offset, length);
+    }
+    // accumulate negatively to reach Long.MIN_VALUE
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long multmin = limit / 10;
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = buffer[i] - '0';
+      if (digit < 0 || digit > 9 || result < multmin) {
+        throw numberFormatException(buffer, offset, length);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw numberFormatException(buffer, offset, length);
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  /**
+   * Parses a double in the same format as {@link Double#parseDouble(String)}.
+   * <p>
+   * Plain decimal numbers whose significant digits fit in the 53 bits of a double and whose
+   * exponent is small are converted exactly without creating a {@link String}. The other numbers
+   * are passed to {@link Double#parseDouble(String)}.
+   * </p>
+   *
+   * @param buffer the buffer that holds the characters
+   * @param offset the offset of the characters in the buffer
+   * @param length the number of the characters
+   * @return the double value
+   * @throws NumberFormatException If the characters are not a double
+   */
+  static double parseDouble(char[] buffer, int offset, int length) {
+    int i = offset, end = offset + length;
+    boolean negative = false;
+    if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+      negative = buffer[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0, exponent = 0;
+    boolean hasDigit = false, exact = true;
+    for (; i < end && isDigit(buffer[i]); i++) {
+      hasDigit = true;
+      if (digits < MAX_MANTISSA_DIGITS) {
+        mantissa = mantissa * 10 + (buffer[i] - '0');
+        if (mantissa != 0) {
+          digits++;
+        }
+      } else {
+        exact = false;
+      }
+    }
+    if (i < end && buffer[i] == '.') {
+      for (i++; i < end && isDigit(buffer[i]); i++) {
+        hasDigit = true;
+        if (digits < MAX_MANTISSA_DIGITS) {
+          mantissa = mantissa * 10 + (buffer[i] - '0');
+          if (mantissa != 0) {
+            digits++;
+          }
+          exponent--;
+        } else {
+          exact = false;
+        }
+      }
+    }
+    if (hasDigit && i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+        negativeExponent = buffer[i] == '-';
+        i++;
+      }
+      int e = 0;
+      boolean hasExponentDigit = false;
+      for (; i < end && isDigit(buffer[i]) && e < 1000; i++) {
+        hasExponentDigit = true;
+        e = e * 10 + (buffer[i] - '0');
+      }
+      exact &= hasExponentDigit;
+      exponent += negativeExponent ? -e : e;
+    }
+    if (exact && hasDigit && i == end && mantissa <= MAX_EXACT_MANTISSA
+        && exponent >= -22 && exponent <= 22) {
+      double value = exponent >= 0
+          ? mantissa * POWERS_OF_TEN[exponent]
+          : mantissa / POWERS_OF_TEN[-exponent];
+      return negative ? -value : value;
+    }
+    // NaN, Infinity, hexadecimal, many digits, large exponents, or malformed
+    return Double.parseDouble(new String(buffer, offset, length));
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static NumberFormatException numberFormatException(char[] buffer, int offset,
+                                                             int length) {
+    return new NumberFormatException(
+        "For input string: \"" + new String(buffer, offset, length) + "\"");
+  }
+}
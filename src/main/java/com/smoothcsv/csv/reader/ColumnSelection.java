@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Columns to be read by a reader. Values in the other columns are skipped without being passed to
+ * the reader.
+ *
+ * @author kohii
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ColumnSelection {
+
+  /**
+   * Indices of the selected columns, or null if the columns are selected by name
+   */
+  private final List<Integer> indices;
+
+  /**
+   * Names of the selected columns, or null if the columns are selected by index
+   */
+  private final List<String> names;
+
+  /**
+   * Selects columns by index.
+   *
+   * @param indices Indices of the columns, starting from 0
+   * @return The instance of <code>ColumnSelection</code> which selects the specified columns
+   */
+  public static ColumnSelection indices(int... indices) {
+    List<Integer> list = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      if (index < 0) {
+        throw new IllegalArgumentException("Negative column index: " + index);
+      }
+      list.add(index);
+    }
+    return new ColumnSelection(Collections.unmodifiableList(list), null);
+  }
+
+  /**
+   * Selects columns by name. The first row read by the reader is treated as the header, which holds
+   * the names of the columns.
+   *
+   * @param names Names of the columns
+   * @return The instance of <code>ColumnSelection</code> which selects the specified columns
+   */
+  public static ColumnSelection names(String... names) {
+    return new ColumnSelection(null, Collections.unmodifiableList(Arrays.asList(names.clone())));
+  }
+
+  /**
+   * @return true if the columns are selected by name
+   */
+  boolean isByName() {
+    return names != null;
+  }
+
+  /**
+   * Returns the selected columns.
+   *
+   * @return An array whose element is true if the column at the index is selected
+   */
+  boolean[] resolve() {
+    int length = 0;
+    for (int index : indices) {
+      length = Math.max(length, index + 1);
+    }
+    boolean[] selected = new boolean[length];
+    for (int index : indices) {
+      selected[index] = true;
+    }
+    return selected;
+  }
+
+  /**
+   * Returns the selected columns.
+   *
+   * @param header The values of the header row
+   * @return An array whose element is true if the column at the index is selected
+   * @throws IllegalArgumentException If a name is not found in the header
+   */
+  boolean[] resolve(List<String> header) {
+    boolean[] selected = new boolean[header.size()];
+    for (String name : names) {
+      int index = header.indexOf(name);
+      if (index < 0) {
+        throw new IllegalArgumentException("Column not found in the header: " + name);
+      }
+      selected[index] = true;
+    }
+    return selected;
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+/**
+ * Type of the values in a column of {@link RowBatch}.
+ *
+ * @author kohii
+ */
+public enum ColumnType {
+
+  /**
+   * Characters, which are kept in the character arena of the batch.
+   */
+  STRING,
+
+  /**
+   * int values in the format of {@link Integer#parseInt(String)}.
+   */
+  INT,
+
+  /**
+   * long values in the format of {@link Long#parseLong(String)}.
+   */
+  LONG,
+
+  /**
+   * double values in the format of {@link Double#parseDouble(String)}.
+   */
+  DOUBLE
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * The position of a reader between two rows, from which another reader can resume reading.
+ * <p>
+ * A checkpoint is taken by {@link AbstractCsvReader#checkpoint()} or
+ * {@link AbstractByteCsvReader#checkpoint()}, and passed to {@link AbstractCsvReader#resume} or
+ * {@link AbstractByteCsvReader#resume} of a new reader over the same input, created with the same
+ * properties and options. It holds the offset of the next row, the index of the next row, and the
+ * columns resolved from the header row, so the new reader neither parses the rows before the
+ * offset nor reads the header row again.
+ * </p>
+ * <pre>
+ * try (DefaultByteCsvReader reader = new DefaultByteCsvReader(ByteInput.map(path), properties)) {
+ *   if (saved != null) {
+ *     reader.resume(saved);
+ *   }
+ *   List&lt;String&gt; row;
+ *   while ((row = reader.readRow()) != null) {
+ *     importRow(row);
+ *     if (reader.getRowIndex() % 100000 == 0) {
+ *       commit(reader.checkpoint());
+ *     }
+ *   }
+ * }
+ * </pre>
+ * <p>
+ * A checkpoint can be persisted by {@link #writeTo(DataOutput)} and read back by
+ * {@link #readFrom(DataInput)}.
+ * </p>
+ *
+ * @author kohii
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class CsvCheckpoint {
+
+  private static final int VERSION = 1;
+
+  /**
+   * true if {@link #getOffset()} is in bytes, or false if it is in characters
+   */
+  private final boolean byteOffset;
+
+  /**
+   * The offset of the next row in the input
+   */
+  private final long offset;
+
+  /**
+   * The index of the next row
+   */
+  private final long rowIndex;
+
+  /**
+   * true if the columns are selected by name and the header row has not been read yet
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final boolean headerPending;
+
+  /**
+   * An array whose element is true if the column at the index is read, or null if all columns are
+   * read
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final boolean[] selectedColumns;
+
+  @Getter(AccessLevel.PACKAGE)
+  private final int minColumnCount;
+
+  @Getter(AccessLevel.PACKAGE)
+  private final int maxColumnCount;
+
+  /**
+   * Writes this checkpoint.
+   *
+   * @param out The output
+   * @throws IOException If an I/O error occurs
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(VERSION);
+    out.writeBoolean(byteOffset);
+    out.writeLong(offset);
+    out.writeLong(rowIndex);
+    out.writeBoolean(headerPending);
+    out.writeInt(selectedColumns == null ? -1 : selectedColumns.length);
+    if (selectedColumns != null) {
+      for (boolean selected : selectedColumns) {
+        out.writeBoolean(selected);
+      }
+    }
+    out.writeInt(minColumnCount);
+    out.writeInt(maxColumnCount);
+  }
+
+  /**
+   * Reads a checkpoint written by {@link #writeTo(DataOutput)}.
+   *
+   * @param in The input
+   * @return The checkpoint
+   * @throws IOException If an I/O error occurs, or the input is not a checkpoint
+   */
+  public static CsvCheckpoint readFrom(DataInput in) throws IOException {
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported checkpoint version: " + version);
+    }
+    boolean byteOffset = in.readBoolean();
+    long offset = in.readLong();
+    long rowIndex = in.readLong();
+    boolean headerPending = in.readBoolean();
+    int columnCount = in.readInt();
+    boolean[] selectedColumns = null;
+    if (columnCount >= 0) {
+      selectedColumns = new boolean[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        selectedColumns[i] = in.readBoolean();
+      }
+    }
+    int minColumnCount = in.readInt();
+    int maxColumnCount = in.readInt();
+    if (offset < 0 || rowIndex < 0) {
+      throw new IOException("Invalid checkpoint");
+    }
+    return new CsvCheckpoint(byteOffset, offset, rowIndex, headerPending, selectedColumns,
+        minColumnCount, maxColumnCount);
+  }
+}
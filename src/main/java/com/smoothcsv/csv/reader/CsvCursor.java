@@ -0,0 +1,297 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+
+/**
+ * CSV Reader that lets the caller pull rows and fields one by one.
+ * <p>
+ * {@link #nextRow()} parses the next row into a buffer reused for every row, and
+ * {@link #nextField()} moves to the next field of the row. The value of the current field can be
+ * taken as a {@link CharSequence} over the buffer, or parsed by the typed getters without creating
+ * a {@link String}, so reading a file allocates nothing once the buffer is large enough for the
+ * longest row.
+ * </p>
+ * <pre>
+ * try (CsvCursor cursor = new CsvCursor(in, CsvProperties.DEFAULT)) {
+ *   while (cursor.nextRow()) {
+ *     while (cursor.nextField()) {
+ *       if (cursor.getColumnIndex() == 2) {
+ *         total += cursor.getLong();
+ *       }
+ *     }
+ *   }
+ * }
+ * </pre>
+ * <p>
+ * Rows must be read by {@link #nextRow()}. {@link #readRow()} returns the cursor itself.
+ * </p>
+ *
+ * @author kohii
+ */
+public class CsvCursor extends AbstractCsvReader<CsvCursor> {
+
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  private static final int INITIAL_FIELD_COUNT = 16;
+
+  /**
+   * The characters of the values in the current row.
+   */
+  private char[] chars = new char[INITIAL_BUFFER_SIZE];
+  private int length;
+
+  /**
+   * The value of the field i is the characters from offsets[i] to offsets[i + 1] in
+   * {@link #chars}, which is in the column columns[i].
+   */
+  private int[] offsets = new int[INITIAL_FIELD_COUNT + 1];
+  private int[] columns = new int[INITIAL_FIELD_COUNT];
+  private int fieldCount;
+
+  /**
+   * The index of the current field, or -1 if {@link #nextField()} has not been called for the
+   * row.
+   */
+  private int field = -1;
+
+  private final Field fieldSequence = new Field();
+
+  /**
+   * Constructs CsvCursor.
+   *
+   * @param in         A Reader
+   * @param properties CSV Properties
+   */
+  public CsvCursor(Reader in, CsvProperties properties) {
+    super(in, properties, CsvReadOption.DEFAULT);
+  }
+
+  /**
+   * Constructs CsvCursor.
+   *
+   * @param in         A Reader
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   */
+  public CsvCursor(Reader in, CsvProperties properties, CsvReadOption options) {
+    super(in, properties, options);
+  }
+
+  /**
+   * Reads the next row. The cursor is placed before the first field of the row.
+   *
+   * @return true if a row has been read, or false if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  public boolean nextRow() throws IOException {
+    if (readRow() != null) {
+      return true;
+    }
+    fieldCount = 0;
+    field = -1;
+    return false;
+  }
+
+  /**
+   * Moves to the next field of the current row.
+   *
+   * @return true if the cursor is on a field, or false if there are no more fields in the row
+   */
+  public boolean nextField() {
+    if (field < fieldCount) {
+      field++;
+    }
+    return field < fieldCount;
+  }
+
+  /**
+   * @return The number of fields in the current row
+   */
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * Returns the index of the column of the current field. This differs from the position of the
+   * field in the row if {@link CsvReadOption#getColumns()} is specified.
+   *
+   * @return The column index
+   */
+  public int getColumnIndex() {
+    checkField();
+    return columns[field];
+  }
+
+  /**
+   * Returns the value of the current field. The returned {@link CharSequence} is reused and valid
+   * until the cursor moves.
+   *
+   * @return The value
+   */
+  public CharSequence fieldAsCharSequence() {
+    checkField();
+    return fieldSequence;
+  }
+
+  /**
+   * @return true if the value of the current field is empty
+   */
+  public boolean isEmpty() {
+    checkField();
+    return offsets[field] == offsets[field + 1];
+  }
+
+  /**
+   * @return A new {@link String} of the value of the current field
+   */
+  public String getString() {
+    checkField();
+    return new String(chars, offsets[field], offsets[field + 1] - offsets[field]);
+  }
+
+  /**
+   * Parses the value of the current field in the format of {@link Integer#parseInt(String)}.
+   *
+   * @return The value
+   * @throws NumberFormatException If the value is not an int
+   */
+  public int getInt() {
+    checkField();
+    return CharNumbers.parseInt(chars, offsets[field], offsets[field + 1] - offsets[field]);
+  }
+
+  /**
+   * Parses the value of the current field in the format of {@link Long#parseLong(String)}.
+   *
+   * @return The value
+   * @throws NumberFormatException If the value is not a long
+   */
+  public long getLong() {
+    checkField();
+    return CharNumbers.parseLong(chars, offsets[field], offsets[field + 1] - offsets[field]);
+  }
+
+  /**
+   * Parses the value of the current field in the format of {@link Double#parseDouble(String)}.
+   *
+   * @return The value
+   * @throws NumberFormatException If the value is not a double
+   */
+  public double getDouble() {
+    checkField();
+    return CharNumbers.parseDouble(chars, offsets[field], offsets[field + 1] - offsets[field]);
+  }
+
+  /**
+   * Parses the value of the current field, which must be <code>true</code> or
+   * <code>false</code>, ignoring case.
+   *
+   * @return The value
+   * @throws IllegalArgumentException If the value is not a boolean
+   */
+  public boolean getBoolean() {
+    checkField();
+    if (fieldEqualsIgnoreCase("true")) {
+      return true;
+    } else if (fieldEqualsIgnoreCase("false")) {
+      return false;
+    }
+    throw new IllegalArgumentException("For input string: \"" + getString() + "\"");
+  }
+
+  @Override
+  protected CsvCursor createNewRow(long rowIndex) {
+    length = 0;
+    fieldCount = 0;
+    field = -1;
+    return this;
+  }
+
+  @Override
+  protected void handleValue(CsvCursor row, long rowIndex, int columnIndex, char[] buffer,
+                             int offset, int length) {
+    if (chars.length - this.length < length) {
+      chars = Arrays.copyOf(chars, Math.max(this.length + length, chars.length * 2));
+    }
+    if (columns.length == fieldCount) {
+      columns = Arrays.copyOf(columns, fieldCount * 2);
+      offsets = Arrays.copyOf(offsets, fieldCount * 2 + 1);
+    }
+    System.arraycopy(buffer, offset, chars, this.length, length);
+    columns[fieldCount] = columnIndex;
+    offsets[fieldCount] = this.length;
+    this.length += length;
+    offsets[++fieldCount] = this.length;
+  }
+
+  @Override
+  protected void handleValue(CsvCursor row, long rowIndex, int columnIndex, String value) {
+    char[] chars = value.toCharArray();
+    handleValue(row, rowIndex, columnIndex, chars, 0, chars.length);
+  }
+
+  private boolean fieldEqualsIgnoreCase(String s) {
+    int offset = offsets[field];
+    if (offsets[field + 1] - offset != s.length()) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (Character.toLowerCase(chars[offset + i]) != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void checkField() {
+    if (field < 0 || field >= fieldCount) {
+      throw new IllegalStateException("The cursor is not on a field");
+    }
+  }
+
+  /**
+   * The value of the current field.
+   */
+  private final class Field implements CharSequence {
+
+    @Override
+    public int length() {
+      return offsets[field + 1] - offsets[field];
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length()) {
+        throw new IndexOutOfBoundsException("index: " + index);
+      }
+      return chars[offsets[field] + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return getString();
+    }
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Parses CSV fed in chunks, without blocking.
+ * <p>
+ * The chunks are given by {@link #feed(char[], int, int)} or {@link #feed(ByteBuffer)}, and
+ * {@link #endOfInput()} is called after the last chunk. Every row completed by a chunk is passed
+ * to the action during the call. A chunk may end anywhere, even in the middle of a quoted value, a
+ * CRLF or a multi-byte character; the row that is not complete yet is kept until the following
+ * chunks complete it, and nothing else is buffered.
+ * </p>
+ * <pre>
+ * CsvPushParser&lt;List&lt;String&gt;&gt; parser = new CsvPushParser&lt;&gt;(
+ *     in -&gt; new DefaultCsvReader(in, properties), row -&gt; handle(row));
+ * // on each read of the channel
+ * parser.feed(buffer);
+ * // at the end of the input
+ * parser.endOfInput();
+ * </pre>
+ * <p>
+ * The rows are parsed by a reader created by the reader factory, so the rows are the same as the
+ * rows the reader would read from a Reader over the whole input. The reader must be created with
+ * the given Reader, from which it never reads any character. This class is not thread-safe.
+ * </p>
+ *
+ * @param <R> The class that holds values of one row.
+ * @author kohii
+ */
+public class CsvPushParser<R> {
+
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  private static final int DECODE_BUFFER_SIZE = 8192;
+
+  private final AbstractCsvReader<R> reader;
+
+  private final Consumer<? super R> action;
+
+  private final CharsetDecoder decoder;
+
+  /**
+   * The characters of the row that is not complete yet.
+   */
+  private char[] pending = new char[INITIAL_BUFFER_SIZE];
+  private int pendingLength;
+
+  /**
+   * The bytes of a character split across chunks, and the characters decoded from bytes.
+   */
+  private ByteBuffer partialBytes;
+  private CharBuffer decoded;
+
+  private boolean ended;
+
+  /**
+   * Constructs CsvPushParser that decodes bytes in UTF-8.
+   *
+   * @param readerFactory A function that creates a reader with the specified Reader
+   * @param action        The action to perform for each row
+   */
+  public CsvPushParser(Function<Reader, ? extends AbstractCsvReader<R>> readerFactory,
+                       Consumer<? super R> action) {
+    this(readerFactory, action, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Constructs CsvPushParser.
+   *
+   * @param readerFactory A function that creates a reader with the specified Reader
+   * @param action        The action to perform for each row
+   * @param charset       The charset to decode the chunks given by {@link #feed(ByteBuffer)}
+   */
+  public CsvPushParser(Function<Reader, ? extends AbstractCsvReader<R>> readerFactory,
+                       Consumer<? super R> action, Charset charset) {
+    this.reader = Objects.requireNonNull(readerFactory.apply(new FeedReader()));
+    this.action = Objects.requireNonNull(action);
+    // malformed input is replaced as InputStreamReader does
+    this.decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  /**
+   * Feeds a chunk of characters.
+   *
+   * @param chars  The characters
+   * @param offset The offset of the chunk in the array
+   * @param length The length of the chunk
+   * @throws IOException           If the reader throws an exception
+   * @throws IllegalStateException If {@link #endOfInput()} has been called
+   */
+  public void feed(char[] chars, int offset, int length) throws IOException {
+    ensureNotEnded();
+    if (offset < 0 || length < 0 || offset + length > chars.length) {
+      throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+    }
+    if (length == 0) {
+      return;
+    }
+    if (pendingLength == 0) {
+      // parse the chunk in place, and keep only the incomplete row
+      int start = reader.readRowsIn(chars, offset, length, action);
+      append(chars, start, offset + length - start);
+    } else if (pending[pendingLength - 1] == '\r' || containsLineBreak(chars, offset, length)) {
+      append(chars, offset, length);
+      parsePending();
+    } else {
+      // the row cannot be completed without a line break
+      append(chars, offset, length);
+    }
+  }
+
+  /**
+   * Feeds a chunk of characters.
+   *
+   * @param chars The characters
+   * @throws IOException           If the reader throws an exception
+   * @throws IllegalStateException If {@link #endOfInput()} has been called
+   */
+  public void feed(CharSequence chars) throws IOException {
+    if (chars instanceof CharBuffer && ((CharBuffer) chars).hasArray()) {
+      CharBuffer cb = (CharBuffer) chars;
+      feed(cb.array(), cb.arrayOffset() + cb.position(), cb.remaining());
+    } else {
+      char[] array = new char[chars.length()];
+      if (chars instanceof String) {
+        ((String) chars).getChars(0, array.length, array, 0);
+      } else {
+        for (int i = 0; i < array.length; i++) {
+          array[i] = chars.charAt(i);
+        }
+      }
+      feed(array, 0, array.length);
+    }
+  }
+
+  /**
+   * Feeds a chunk of bytes, which are decoded in the charset given to the constructor. The bytes
+   * of a character split across chunks are kept until the following chunk. The buffer is
+   * consumed.
+   *
+   * @param bytes The bytes
+   * @throws IOException           If the reader throws an exception
+   * @throws IllegalStateException If {@link #endOfInput()} has been called
+   */
+  public void feed(ByteBuffer bytes) throws IOException {
+    ensureNotEnded();
+    if (partialBytes != null && partialBytes.position() > 0) {
+      // complete the character split across chunks
+      while (partialBytes.position() > 0 && bytes.hasRemaining()) {
+        partialBytes.put(bytes.get()).flip();
+        decode(partialBytes, false);
+        partialBytes.compact();
+      }
+    }
+    decode(bytes, false);
+    if (bytes.hasRemaining()) {
+      if (partialBytes == null) {
+        partialBytes = ByteBuffer.allocate(16);
+      }
+      partialBytes.put(bytes);
+    }
+  }
+
+  /**
+   * Tells that all chunks have been fed, and passes the last row to the action.
+   *
+   * @throws IOException If the reader throws an exception
+   */
+  public void endOfInput() throws IOException {
+    if (ended) {
+      return;
+    }
+    if (decoded != null) {
+      // bytes have been fed
+      if (partialBytes != null) {
+        partialBytes.flip();
+        decode(partialBytes, true);
+        partialBytes = null;
+      } else {
+        decode(ByteBuffer.allocate(0), true);
+      }
+      decoded.clear();
+      decoder.flush(decoded);
+      decoded.flip();
+      feed(decoded.array(), 0, decoded.limit());
+    }
+    ended = true;
+    parsePending();
+  }
+
+  /**
+   * @return The index of the next row
+   */
+  public long getRowIndex() {
+    return reader.getRowIndex();
+  }
+
+  /**
+   * @return The number of characters of the row that is not complete yet
+   */
+  public int getPendingLength() {
+    return pendingLength;
+  }
+
+  /**
+   * Decodes bytes, and feeds the characters.
+   *
+   * @param bytes       The bytes
+   * @param endOfInput  true if the bytes are the last bytes of the input
+   * @throws IOException If the reader throws an exception
+   */
+  private void decode(ByteBuffer bytes, boolean endOfInput) throws IOException {
+    if (decoded == null) {
+      decoded = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+    }
+    CoderResult result;
+    do {
+      decoded.clear();
+      result = decoder.decode(bytes, decoded, endOfInput);
+      decoded.flip();
+      feed(decoded.array(), 0, decoded.limit());
+    } while (result.isOverflow());
+  }
+
+  /**
+   * Parses the characters of the incomplete row and the characters appended to it.
+   *
+   * @throws IOException If the reader throws an exception
+   */
+  private void parsePending() throws IOException {
+    int start = reader.readRowsIn(pending, 0, pendingLength, action);
+    if (start < 0) {
+      pendingLength = 0;
+    } else if (start > 0) {
+      System.arraycopy(pending, start, pending, 0, pendingLength - start);
+      pendingLength -= start;
+    }
+  }
+
+  private void append(char[] chars, int offset, int length) {
+    if (length <= 0) {
+      return;
+    }
+    if (pending.length < pendingLength + length) {
+      pending = Arrays.copyOf(pending, Math.max(pendingLength + length, pending.length * 2));
+    }
+    System.arraycopy(chars, offset, pending, pendingLength, length);
+    pendingLength += length;
+  }
+
+  private static boolean containsLineBreak(char[] chars, int offset, int length) {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      char c = chars[i];
+      if (c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void ensureNotEnded() {
+    if (ended) {
+      throw new IllegalStateException("The end of the input has been fed");
+    }
+  }
+
+  /**
+   * The Reader of {@link #reader}, which has no character beyond the text being parsed.
+   */
+  private final class FeedReader extends Reader {
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (ended) {
+        return -1;
+      }
+      throw RowParser.IncompleteTextException.INSTANCE;
+    }
+
+    @Override
+    public void close() {
+      // nothing to close
+    }
+  }
+}
@@ -32,7 +32,8 @@ public class CsvReadOption {
       false,
       false,
       false,
-      false
+      false,
+      null
   );
 
   /**
@@ -54,4 +55,21 @@ public class CsvReadOption {
    * if true, empty lines are skipped.
    */
   private final boolean skipEmptyLines;
+
+  /**
+   * Columns to read, or null to read all columns.
+   */
+  private final ColumnSelection columns;
+
+  /**
+   * @param strictQuotes            if true, characters outside the quotes are ignored
+   * @param ignoreLeadingWhiteSpace if true, white space in front of a quote in a field is ignored
+   * @param skipCommentLines        if true, lines that starts with <code>#</code> are ignored
+   * @param skipEmptyLines          if true, empty lines are skipped
+   * @return The instance of <code>CsvReadOption</code> which reads all columns
+   */
+  public static CsvReadOption of(boolean strictQuotes, boolean ignoreLeadingWhiteSpace,
+                                 boolean skipCommentLines, boolean skipEmptyLines) {
+    return of(strictQuotes, ignoreLeadingWhiteSpace, skipCommentLines, skipEmptyLines, null);
+  }
 }
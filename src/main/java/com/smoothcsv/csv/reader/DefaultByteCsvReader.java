@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import com.smoothcsv.csv.prop.LineSeparator;
+
+/**
+ * Simple CSV Reader for UTF-8 encoded bytes. This Reader reads CSV lines and parses into
+ * {@link List}.
+ *
+ * @author kohii
+ */
+public class DefaultByteCsvReader extends AbstractByteCsvReader<List<String>> {
+
+  /**
+   * The list given to {@link #readRow(List)}, which is filled instead of a new list.
+   */
+  private List<String> reusableRow;
+
+  /**
+   * Constructs DefaultByteCsvReader using {@link CsvProperties#DEFAULT} and
+   * {@link CsvReadOption#DEFAULT}.
+   *
+   * @param in A ByteInput
+   */
+  public DefaultByteCsvReader(ByteInput in) {
+    super(in, CsvProperties.DEFAULT, CsvReadOption.DEFAULT);
+  }
+
+  /**
+   * Constructs DefaultByteCsvReader.
+   *
+   * @param in         A ByteInput
+   * @param properties CSV Properties
+   */
+  public DefaultByteCsvReader(ByteInput in, CsvProperties properties) {
+    super(in, properties, CsvReadOption.DEFAULT);
+  }
+
+  /**
+   * Constructs DefaultByteCsvReader.
+   *
+   * @param in         A ByteInput
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   */
+  public DefaultByteCsvReader(ByteInput in, CsvProperties properties, CsvReadOption options) {
+    super(in, properties, options);
+  }
+
+  /**
+   * Reads values in one row into the specified list. The list is cleared before the values are
+   * added, so a list reused for every row keeps its capacity and only the values are allocated.
+   *
+   * @param row The list to fill
+   * @return The specified list, or null if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  public List<String> readRow(List<String> row) throws IOException {
+    reusableRow = Objects.requireNonNull(row);
+    try {
+      return readRow();
+    } finally {
+      reusableRow = null;
+    }
+  }
+
+  @Override
+  protected List<String> createNewRow(long rowIndex) {
+    if (reusableRow != null) {
+      reusableRow.clear();
+      return reusableRow;
+    }
+    return new ArrayList<>(Math.max(0, getMaxColumnCount()));
+  }
+
+  @Override
+  protected void handleValue(List<String> row, long rowIndex, int columnIndex, String data) {
+    row.add(data);
+  }
+
+  @Override
+  protected void handleLineSeparator(List<String> row, long rowIndex, LineSeparator lineFeedCode) {
+    // do nothing
+  }
+}
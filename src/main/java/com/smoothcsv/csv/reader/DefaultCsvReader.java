@@ -13,9 +13,11 @@
  */
 package com.smoothcsv.csv.reader;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import com.smoothcsv.csv.prop.CsvProperties;
 import com.smoothcsv.csv.prop.LineSeparator;
@@ -27,6 +29,11 @@ import com.smoothcsv.csv.prop.LineSeparator;
  */
 public class DefaultCsvReader extends AbstractCsvReader<List<String>> {
 
+  /**
+   * The list given to {@link #readRow(List)}, which is filled instead of a new list.
+   */
+  private List<String> reusableRow;
+
   /**
    * Constructs DefaultCsvReader using {@link CsvProperties#DEFAULT} and
    * {@link CsvReadOption#DEFAULT}.
@@ -58,18 +65,39 @@ public class DefaultCsvReader extends AbstractCsvReader<List<String>> {
     super(in, properties, options);
   }
 
+  /**
+   * Reads values in one row into the specified list. The list is cleared before the values are
+   * added, so a list reused for every row keeps its capacity and only the values are allocated.
+   *
+   * @param row The list to fill
+   * @return The specified list, or null if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  public List<String> readRow(List<String> row) throws IOException {
+    reusableRow = Objects.requireNonNull(row);
+    try {
+      return readRow();
+    } finally {
+      reusableRow = null;
+    }
+  }
+
   @Override
-  protected List<String> createNewRow(int rowIndex) {
+  protected List<String> createNewRow(long rowIndex) {
+    if (reusableRow != null) {
+      reusableRow.clear();
+      return reusableRow;
+    }
     return new ArrayList<>(Math.max(0, getMaxColumnCount()));
   }
 
   @Override
-  protected void handleValue(List<String> row, int rowIndex, int columnIndex, String data) {
+  protected void handleValue(List<String> row, long rowIndex, int columnIndex, String data) {
     row.add(data);
   }
 
   @Override
-  protected void handleLineSeparator(List<String> row, int rowIndex, LineSeparator lineFeedCode) {
+  protected void handleLineSeparator(List<String> row, long rowIndex, LineSeparator lineFeedCode) {
     // do nothing
   }
 }
@@ -0,0 +1,631 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Parses a single file on multiple threads.
+ * <p>
+ * The file is split into chunks of bytes, and the chunks are parsed on a {@link ForkJoinPool} by
+ * readers created by the reader factory. To find the row boundaries, each chunk is first scanned
+ * in parallel from the first line break in it, tracking only whether each byte is in a quoted
+ * value, once assuming that the line break is outside a quoted value and once assuming that it is
+ * inside. The scan that agrees with the end of the previous chunk is then taken, so every chunk is
+ * parsed only once. Bytes whose meaning depends on more than the quotes, such as an escape
+ * character outside a quoted value or a comment line, stop the scan, and the rest of the chunk is
+ * scanned by a reader. The scan also counts the rows in each chunk, so that every reader receives
+ * the same row indices as a single reader reading the whole file.
+ * </p>
+ *
+ * @param <R> The class that holds values of one row.
+ * @author kohii
+ */
+public class ParallelCsvParser<R> {
+
+  /**
+   * Minimum size of a chunk chosen automatically.
+   */
+  private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * Maximum size of a chunk chosen automatically.
+   */
+  private static final long MAX_CHUNK_SIZE = 1 << 26;
+
+  /**
+   * Number of chunks per thread when the chunk size is chosen automatically.
+   */
+  private static final int CHUNKS_PER_THREAD = 8;
+
+  private final Path path;
+
+  private final Function<ByteInput, ? extends AbstractByteCsvReader<R>> readerFactory;
+
+  private final ForkJoinPool pool;
+
+  private final long chunkSize;
+
+  /**
+   * Constructs ParallelCsvParser that runs on {@link ForkJoinPool#commonPool()}.
+   *
+   * @param path          The path of the file
+   * @param readerFactory A function that creates a reader for a part of the file
+   */
+  public ParallelCsvParser(Path path,
+                           Function<ByteInput, ? extends AbstractByteCsvReader<R>> readerFactory) {
+    this(path, readerFactory, ForkJoinPool.commonPool(), 0);
+  }
+
+  /**
+   * Constructs ParallelCsvParser.
+   *
+   * @param path          The path of the file
+   * @param readerFactory A function that creates a reader for a part of the file
+   * @param pool          The pool to run the parsing tasks
+   * @param chunkSize     The size of a chunk in bytes, or 0 to choose it from the file size and
+   *                      the parallelism of the pool
+   */
+  public ParallelCsvParser(Path path,
+                           Function<ByteInput, ? extends AbstractByteCsvReader<R>> readerFactory,
+                           ForkJoinPool pool, long chunkSize) {
+    if (chunkSize < 0) {
+      throw new IllegalArgumentException("chunkSize is negative");
+    }
+    this.path = Objects.requireNonNull(path);
+    this.readerFactory = Objects.requireNonNull(readerFactory);
+    this.pool = Objects.requireNonNull(pool);
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Performs an action for each row. The action is called concurrently from the threads of the
+   * pool, and the rows are passed in no particular order.
+   *
+   * @param action The action to perform
+   * @throws IOException If an I/O error occurs
+   */
+  public void forEach(Consumer<? super R> action) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      boolean[] columns = selectColumns(channel);
+      List<Chunk> chunks = split(channel);
+      AtomicBoolean aborted = new AtomicBoolean();
+      List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.size());
+      try {
+        for (Chunk chunk : chunks) {
+          tasks.add(pool.submit(() -> {
+            try (AbstractByteCsvReader<R> reader = open(channel, chunk, columns)) {
+              R row;
+              while (!aborted.get() && (row = reader.readRow()) != null) {
+                action.accept(row);
+              }
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+          join(task);
+        }
+      } finally {
+        stopAll(tasks, aborted);
+      }
+    }
+  }
+
+  /**
+   * Performs an action for each row in the order of the file. The action is called on the calling
+   * thread, while the following chunks are parsed on the pool.
+   *
+   * @param action The action to perform
+   * @throws IOException If an I/O error occurs
+   */
+  public void forEachOrdered(Consumer<? super R> action) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      boolean[] columns = selectColumns(channel);
+      List<Chunk> chunks = split(channel);
+      // limit the number of chunks held in memory
+      int maxInFlight = pool.getParallelism() * 2;
+      Deque<ForkJoinTask<List<R>>> inFlight = new ArrayDeque<>();
+      AtomicBoolean aborted = new AtomicBoolean();
+      int next = 0;
+      try {
+        while (next < chunks.size() || !inFlight.isEmpty()) {
+          while (next < chunks.size() && inFlight.size() < maxInFlight) {
+            Chunk chunk = chunks.get(next++);
+            inFlight.add(pool.submit(() -> {
+              try (AbstractByteCsvReader<R> reader = open(channel, chunk, columns)) {
+                List<R> rows = new ArrayList<>();
+                R row;
+                while (!aborted.get() && (row = reader.readRow()) != null) {
+                  rows.add(row);
+                }
+                return rows;
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            }));
+          }
+          List<R> rows = join(inFlight.poll());
+          rows.forEach(action);
+        }
+      } finally {
+        stopAll(inFlight, aborted);
+      }
+    }
+  }
+
+  /**
+   * Splits the file into chunks that start at the beginning of a row.
+   *
+   * @param channel The file
+   * @return chunks
+   * @throws IOException If an I/O error occurs
+   */
+  List<Chunk> split(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long chunk = chunkSize > 0 ? chunkSize : defaultChunkSize(size);
+    int n = (int) ((size + chunk - 1) / chunk);
+    long[] bounds = new long[n + 1];
+    for (int k = 0; k <= n; k++) {
+      bounds[k] = Math.min(k * chunk, size);
+    }
+    QuoteScanner scanner;
+    try (AbstractByteCsvReader<R> reader =
+             readerFactory.apply(ByteInput.of(ByteBuffer.allocate(0)))) {
+      scanner = new QuoteScanner(reader);
+    }
+
+    // scan each chunk from the beginning of its first line, both outside and inside quotes
+    AtomicBoolean aborted = new AtomicBoolean();
+    List<ForkJoinTask<Scan[]>> speculations = new ArrayList<>(n);
+    try {
+      for (int k = 0; k < n; k++) {
+        long from = bounds[k], limit = bounds[k + 1];
+        speculations.add(pool.submit(() -> {
+          try {
+            if (from == 0) {
+              return new Scan[]{scanner.scan(channel, 0, false, limit, size, aborted)};
+            }
+            long start = findLineStart(channel, from, limit);
+            if (start >= limit) {
+              return new Scan[0];
+            }
+            return new Scan[]{
+                scanner.scan(channel, start, false, limit, size, aborted),
+                scanner.scan(channel, start, true, limit, size, aborted)
+            };
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }));
+      }
+
+      List<Chunk> chunks = new ArrayList<>(n);
+      long start = 0;
+      long rowIndex = 0;
+      for (int k = 0; k < n; k++) {
+        Scan[] scans = join(speculations.get(k));
+        if (start >= bounds[k + 1]) {
+          // a row of the previous chunk covers this chunk
+          continue;
+        }
+        Scan scan = null;
+        for (Scan s : scans) {
+          if (s != null && s.start == start) {
+            scan = s;
+          }
+        }
+        if (scan == null) {
+          // neither scan has found the row that starts the chunk
+          scan = scan(channel, start, bounds[k + 1], size);
+        } else if (!scan.complete) {
+          // the scan has stopped at a row that needs a reader
+          Scan rest = scan(channel, scan.end, bounds[k + 1], size);
+          scan = new Scan(start, rest.end, scan.rowCount + rest.rowCount, true);
+        }
+        chunks.add(new Chunk(start, scan.end, rowIndex));
+        rowIndex += scan.rowCount;
+        start = scan.end;
+      }
+      return chunks;
+    } finally {
+      stopAll(speculations, aborted);
+    }
+  }
+
+  private long defaultChunkSize(long size) {
+    long chunk = size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+    return Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunk));
+  }
+
+  /**
+   * Scans rows from the specified position until a row starts at or after the limit.
+   *
+   * @param channel The file
+   * @param start   The beginning of the first row
+   * @param limit   The limit
+   * @param size    The size of the file
+   * @return the result
+   * @throws IOException If an I/O error occurs
+   */
+  private Scan scan(FileChannel channel, long start, long limit, long size) throws IOException {
+    try (AbstractByteCsvReader<R> reader = readerFactory.apply(
+        ByteInput.map(channel, start, size, ByteInput.DEFAULT_MAP_WINDOW_SIZE))) {
+      reader.startAt(start, 0);
+      while (reader.getPosition() < limit && reader.scanRow()) {
+        // scan next row
+      }
+      return new Scan(start, reader.getPosition(), reader.getRowIndex(), true);
+    }
+  }
+
+  /**
+   * Resolves the columns to read. If the columns are selected by name, the header row is read.
+   *
+   * @param channel The file
+   * @return the columns to read, which are given to the readers of the chunks after the first one
+   * @throws IOException If an I/O error occurs
+   */
+  private boolean[] selectColumns(FileChannel channel) throws IOException {
+    try (AbstractByteCsvReader<R> reader = readerFactory.apply(
+        ByteInput.map(channel, 0, channel.size(), ByteInput.DEFAULT_MAP_WINDOW_SIZE))) {
+      reader.skipHeader();
+      return reader.getSelectedColumns();
+    }
+  }
+
+  private AbstractByteCsvReader<R> open(FileChannel channel, Chunk chunk, boolean[] columns) {
+    AbstractByteCsvReader<R> reader = readerFactory.apply(
+        ByteInput.map(channel, chunk.start, chunk.end, ByteInput.DEFAULT_MAP_WINDOW_SIZE));
+    reader.startAt(chunk.start, chunk.firstRowIndex);
+    if (chunk.start != 0) {
+      reader.selectColumns(columns);
+    }
+    return reader;
+  }
+
+  /**
+   * Finds the position after the first line break at or after the specified position.
+   *
+   * @param channel The file
+   * @param from    The position to start finding
+   * @param limit   The limit
+   * @return the position, or the limit if no line break is found before the limit
+   * @throws IOException If an I/O error occurs
+   */
+  private static long findLineStart(FileChannel channel, long from, long limit)
+      throws IOException {
+    ByteBuffer b = ByteBuffer.allocate(8192);
+    // the previous byte may be a line break
+    long pos = from - 1;
+    boolean isPrevCR = false;
+    for (; ; ) {
+      b.clear();
+      int n = channel.read(b, pos);
+      if (n < 0) {
+        return isPrevCR ? pos : limit;
+      }
+      for (int i = 0; i < n; i++, pos++) {
+        byte c = b.get(i);
+        if (isPrevCR) {
+          return c == '\n' ? pos + 1 : pos;
+        }
+        if (pos >= limit) {
+          return limit;
+        }
+        if (c == '\n') {
+          return pos + 1;
+        } else if (c == '\r') {
+          isPrevCR = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops the tasks, and waits for the tasks that are running, so that no task reads the file
+   * after it is closed.
+   *
+   * @param tasks   The tasks
+   * @param aborted The flag checked by the tasks, which is set to stop them
+   */
+  private static void stopAll(Iterable<? extends ForkJoinTask<?>> tasks, AtomicBoolean aborted) {
+    aborted.set(true);
+    for (ForkJoinTask<?> task : tasks) {
+      // cancel does not wait for a running task, and a task that has not started returns soon
+      task.quietlyJoin();
+    }
+  }
+
+  private static <T> T join(ForkJoinTask<T> task) throws IOException {
+    try {
+      return task.join();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * A range of the file that contains whole rows.
+   */
+  static final class Chunk {
+
+    final long start;
+    final long end;
+    final long firstRowIndex;
+
+    Chunk(long start, long end, long firstRowIndex) {
+      this.start = start;
+      this.end = end;
+      this.firstRowIndex = firstRowIndex;
+    }
+  }
+
+  /**
+   * Result of scanning rows. If the scan is not complete, it has stopped at the row that starts at
+   * the end, which has not been counted.
+   */
+  private static final class Scan {
+
+    final long start;
+    final long end;
+    final long rowCount;
+    final boolean complete;
+
+    Scan(long start, long end, long rowCount, boolean complete) {
+      this.start = start;
+      this.end = end;
+      this.rowCount = rowCount;
+      this.complete = complete;
+    }
+  }
+
+  /**
+   * Finds the row boundaries by tracking only whether each byte is in a quoted value, which is
+   * much cheaper than parsing the rows. It stops at a row where the quotes alone do not decide the
+   * boundaries in the same way as the readers: a quote in the middle of an unquoted value, an
+   * escape character outside a quoted value, or a comment line.
+   */
+  private static final class QuoteScanner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Returned by {@link Window#get(long)} at the end of the file, which no byte equals.
+     */
+    private static final int EOF = 256;
+
+    private final int separator, quote, escape;
+
+    private final boolean skipEmptyLines, skipCommentLines;
+
+    /**
+     * false if the escape character equals the quote, in which case the readers decide all rows.
+     */
+    private final boolean enabled;
+
+    QuoteScanner(AbstractByteCsvReader<?> reader) {
+      this.separator = (byte) reader.separatorUnit;
+      this.quote = (byte) reader.quoteUnit;
+      this.escape = (byte) reader.escapeUnit;
+      this.skipEmptyLines = reader.skipEmptyLines;
+      this.skipCommentLines = reader.skipCommentLines;
+      this.enabled = escape != quote;
+    }
+
+    /**
+     * Scans rows from the specified position until a row starts at or after the limit.
+     *
+     * @param channel  The file
+     * @param from     The position to start scanning, which is the beginning of the first row if
+     *                 inQuotes is false
+     * @param inQuotes true if the position is inside a quoted value, in which case the first row
+     *                 starts after the first line break outside quotes
+     * @param limit    The limit
+     * @param size     The size of the file
+     * @param aborted  The flag to stop scanning
+     * @return the result, or null if no row starts before the limit or the scan stops before
+     * @throws IOException If an I/O error occurs
+     */
+    Scan scan(FileChannel channel, long from, boolean inQuotes, long limit, long size,
+              AtomicBoolean aborted) throws IOException {
+      if (!enabled) {
+        return null;
+      }
+      Window w = new Window(channel, size, aborted);
+      // the beginning of the first row and the current row, or -1 if not found yet
+      long first = inQuotes ? -1 : from;
+      long rowStart = first;
+      long rowCount = 0;
+      boolean fieldStart = true;
+      long pos = from;
+      if (from == 0 && w.get(0) == (byte) 0xEF && w.get(1) == (byte) 0xBB
+          && w.get(2) == (byte) 0xBF) {
+        // UTF-8 BOM
+        pos = rowStart = 3;
+      }
+      for (; ; ) {
+        if (first < 0 && pos >= limit) {
+          // no row starts in the chunk
+          return null;
+        }
+        int c = w.get(pos);
+        if (c == EOF) {
+          if (first < 0) {
+            return null;
+          }
+          if (pos > rowStart) {
+            rowCount++;
+          }
+          return new Scan(first, size, rowCount, true);
+        }
+        if (inQuotes) {
+          if (c == quote) {
+            if (w.get(pos + 1) == quote) {
+              // escaped quote
+              pos += 2;
+            } else {
+              inQuotes = false;
+              fieldStart = false;
+              pos++;
+            }
+          } else if (c == escape) {
+            int next = w.get(pos + 1);
+            pos += next != 0 && (next == quote || next == escape) ? 2 : 1;
+          } else {
+            pos = w.skipQuoted(pos + 1, quote, escape);
+          }
+          continue;
+        }
+        if (c == '\n' || c == '\r') {
+          long end = pos + 1;
+          if (c == '\r' && w.get(end) == '\n') {
+            end++;
+          }
+          if (first < 0) {
+            first = end;
+          } else if (pos > rowStart || !skipEmptyLines) {
+            rowCount++;
+          }
+          if (end >= limit) {
+            return new Scan(first, end, rowCount, true);
+          }
+          rowStart = end;
+          fieldStart = true;
+          pos = end;
+          continue;
+        }
+        if (c == quote && fieldStart) {
+          inQuotes = true;
+          fieldStart = false;
+          pos++;
+        } else if (c == quote || c == escape || (c == '#' && pos == rowStart && skipCommentLines)) {
+          // the readers decide the rest
+          return first < 0 ? null : new Scan(first, rowStart, rowCount, false);
+        } else if (c == separator) {
+          fieldStart = true;
+          pos++;
+        } else {
+          fieldStart = false;
+          pos = w.skipUnquoted(pos + 1, separator, quote, escape);
+        }
+      }
+    }
+  }
+
+  /**
+   * A window of the file read through a buffer.
+   */
+  private static final class Window {
+
+    private final FileChannel channel;
+    private final long size;
+    private final AtomicBoolean aborted;
+    private final ByteBuffer buffer = ByteBuffer.allocate(QuoteScanner.BUFFER_SIZE);
+    private long base;
+    private int length;
+
+    Window(FileChannel channel, long size, AtomicBoolean aborted) {
+      this.channel = channel;
+      this.size = size;
+      this.aborted = aborted;
+    }
+
+    /**
+     * @param pos The position in the file
+     * @return the byte at the position, or {@link QuoteScanner#EOF} at the end of the file
+     * @throws IOException If an I/O error occurs, or the scan has been aborted
+     */
+    int get(long pos) throws IOException {
+      if (pos < base || pos >= base + length) {
+        if (pos >= size) {
+          return QuoteScanner.EOF;
+        }
+        if (aborted.get()) {
+          throw new IOException("The scan has been aborted");
+        }
+        buffer.clear();
+        base = pos;
+        length = 0;
+        while (buffer.hasRemaining() && base + length < size) {
+          int n = channel.read(buffer, base + length);
+          if (n < 0) {
+            break;
+          }
+          length += n;
+        }
+        if (length == 0) {
+          return QuoteScanner.EOF;
+        }
+      }
+      return buffer.get((int) (pos - base));
+    }
+
+    /**
+     * @return the position of the first quote or escape character at or after the specified
+     * position, or the end of the bytes in the buffer
+     */
+    long skipQuoted(long pos, int quote, int escape) {
+      if (pos < base || pos >= base + length) {
+        return pos;
+      }
+      byte[] b = buffer.array();
+      int i = (int) (pos - base), n = length;
+      while (i < n) {
+        byte c = b[i];
+        if (c == quote || c == escape) {
+          break;
+        }
+        i++;
+      }
+      return base + i;
+    }
+
+    /**
+     * @return the position of the first byte that may have a meaning outside quoted values at or
+     * after the specified position, or the end of the bytes in the buffer
+     */
+    long skipUnquoted(long pos, int separator, int quote, int escape) {
+      if (pos < base || pos >= base + length) {
+        return pos;
+      }
+      byte[] b = buffer.array();
+      int i = (int) (pos - base), n = length;
+      while (i < n) {
+        byte c = b[i];
+        if (c == separator || c == quote || c == escape || c == '\n' || c == '\r') {
+          break;
+        }
+        i++;
+      }
+      return base + i;
+    }
+  }
+}
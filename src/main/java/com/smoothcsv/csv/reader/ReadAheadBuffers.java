@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Buffers of characters filled from a Reader by a background thread.
+ * <p>
+ * The buffers are allocated once and passed around two queues: the thread takes a free buffer,
+ * fills it and puts it to the filled queue, and {@link #next()} takes a filled buffer and returns
+ * the buffer taken before to the free queue. While the consumer parses one buffer, up to
+ * {@code bufferCount} buffers are filled ahead, so no buffer is allocated after construction. The
+ * thread is started by the first call of {@link #next()}, and stops at the end of the stream, on an
+ * error or by {@link #stop()}.
+ * </p>
+ *
+ * @author kohii
+ */
+final class ReadAheadBuffers {
+
+  private final Reader in;
+
+  private final BlockingQueue<Buffer> free;
+
+  private final BlockingQueue<Buffer> filled;
+
+  private Thread thread;
+
+  private volatile boolean stopped;
+
+  /**
+   * The buffer returned by {@link #next()} last, which is returned to {@link #free} by the next
+   * call.
+   */
+  private Buffer current;
+
+  /**
+   * The last buffer, which has the end of the stream or an error.
+   */
+  private Buffer last;
+
+  /**
+   * Constructs ReadAheadBuffers.
+   *
+   * @param in          The Reader
+   * @param bufferCount The number of buffers filled ahead
+   * @param bufferSize  The number of characters of each buffer
+   */
+  ReadAheadBuffers(Reader in, int bufferCount, int bufferSize) {
+    this.in = in;
+    // one more buffer is held by the consumer
+    this.free = new ArrayBlockingQueue<>(bufferCount + 1);
+    this.filled = new ArrayBlockingQueue<>(bufferCount + 1);
+    for (int i = 0; i <= bufferCount; i++) {
+      free.add(new Buffer(bufferSize));
+    }
+  }
+
+  /**
+   * Waits for the next filled buffer.
+   *
+   * @return The number of characters in the buffer, or -1 if the end of the stream has been reached
+   * @throws IOException If the Reader has thrown an exception
+   */
+  int next() throws IOException {
+    if (last != null) {
+      return endOfBuffers();
+    }
+    if (thread == null) {
+      thread = new Thread(this::fill, "smoothcsv-read-ahead");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    if (current != null) {
+      free.add(current);
+    }
+    try {
+      current = filled.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      current = null;
+      throw new InterruptedIOException();
+    }
+    if (current.length < 0 || current.error != null) {
+      last = current;
+      return endOfBuffers();
+    }
+    return current.length;
+  }
+
+  /**
+   * @return The characters of the buffer returned by {@link #next()} last
+   */
+  char[] chars() {
+    return current.chars;
+  }
+
+  /**
+   * @return true if the thread has been started
+   */
+  boolean isStarted() {
+    return thread != null;
+  }
+
+  /**
+   * Stops the thread, and waits for it to end, so that the Reader is not read any more when this
+   * method returns. If the thread is in a read, the read is waited for. The Reader is not closed.
+   */
+  void stop() {
+    stopped = true;
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private int endOfBuffers() throws IOException {
+    if (last.error != null) {
+      throw last.error;
+    }
+    return -1;
+  }
+
+  /**
+   * Fills buffers until the end of the stream, an error or {@link #stop()}.
+   */
+  private void fill() {
+    try {
+      while (!stopped) {
+        Buffer buffer = free.take();
+        if (stopped) {
+          return;
+        }
+        try {
+          buffer.length = in.read(buffer.chars);
+        } catch (IOException e) {
+          buffer.error = e;
+        } catch (RuntimeException e) {
+          buffer.error = new IOException(e);
+        }
+        filled.put(buffer);
+        if (buffer.length < 0 || buffer.error != null) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      // stopped
+    }
+  }
+
+  private static final class Buffer {
+
+    final char[] chars;
+
+    /**
+     * The number of characters read, or -1 at the end of the stream.
+     */
+    int length;
+
+    IOException error;
+
+    Buffer(int size) {
+      this.chars = new char[size];
+    }
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A batch of rows held in columns, which is filled by {@link RowBatchReader}.
+ * <p>
+ * Each column has a type given to the constructor. The values of {@link ColumnType#INT},
+ * {@link ColumnType#LONG} and {@link ColumnType#DOUBLE} columns are held in a primitive array for
+ * the column. The characters of the values of {@link ColumnType#STRING} columns are held in a
+ * character arena shared by all the columns, and each column has the offsets and the lengths of
+ * its values in the arena. An empty value and a value missing in a short row are null, which is
+ * marked in the null mask of the column.
+ * </p>
+ * <p>
+ * The arrays are allocated once and reused when the batch is filled again. Columns after the
+ * declared ones are not read.
+ * </p>
+ *
+ * @author kohii
+ */
+public class RowBatch {
+
+  private static final int INITIAL_ARENA_SIZE = 8192;
+
+  private final ColumnType[] types;
+  private final int capacity;
+  private final boolean[][] nulls;
+  private final int[][] ints;
+  private final long[][] longs;
+  private final double[][] doubles;
+  private final int[][] offsets;
+  private final int[][] lengths;
+  private char[] arena;
+  private int arenaLength;
+  private int size;
+
+  /**
+   * Constructs RowBatch.
+   *
+   * @param capacity The maximum number of rows in the batch
+   * @param types    The types of the columns
+   */
+  public RowBatch(int capacity, ColumnType... types) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + capacity);
+    }
+    for (ColumnType type : types) {
+      Objects.requireNonNull(type);
+    }
+    this.types = types.clone();
+    this.capacity = capacity;
+    int n = types.length;
+    this.nulls = new boolean[n][];
+    this.ints = new int[n][];
+    this.longs = new long[n][];
+    this.doubles = new double[n][];
+    this.offsets = new int[n][];
+    this.lengths = new int[n][];
+    boolean hasString = false;
+    for (int i = 0; i < n; i++) {
+      nulls[i] = new boolean[capacity];
+      switch (types[i]) {
+        case INT:
+          ints[i] = new int[capacity];
+          break;
+        case LONG:
+          longs[i] = new long[capacity];
+          break;
+        case DOUBLE:
+          doubles[i] = new double[capacity];
+          break;
+        case STRING:
+          offsets[i] = new int[capacity];
+          lengths[i] = new int[capacity];
+          hasString = true;
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported type: " + types[i]);
+      }
+    }
+    this.arena = new char[hasString ? INITIAL_ARENA_SIZE : 0];
+  }
+
+  /**
+   * @return The maximum number of rows in the batch
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return The number of rows in the batch
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the batch has no room for another row
+   */
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * @return The number of the columns
+   */
+  public int getColumnCount() {
+    return types.length;
+  }
+
+  /**
+   * @param column The index of the column
+   * @return The type of the column
+   */
+  public ColumnType getType(int column) {
+    return types[column];
+  }
+
+  /**
+   * Removes all rows. The arrays of the batch are kept for the next rows.
+   */
+  public void clear() {
+    size = 0;
+    arenaLength = 0;
+  }
+
+  /**
+   * @param column The index of the column
+   * @param row    The index of the row in the batch
+   * @return true if the value is null
+   */
+  public boolean isNull(int column, int row) {
+    checkRow(row);
+    return nulls[column][row];
+  }
+
+  /**
+   * @param column The index of an {@link ColumnType#INT} column
+   * @param row    The index of the row in the batch
+   * @return The value, or 0 if the value is null
+   */
+  public int getInt(int column, int row) {
+    checkRow(row);
+    return getIntVector(column)[row];
+  }
+
+  /**
+   * @param column The index of a {@link ColumnType#LONG} column
+   * @param row    The index of the row in the batch
+   * @return The value, or 0 if the value is null
+   */
+  public long getLong(int column, int row) {
+    checkRow(row);
+    return getLongVector(column)[row];
+  }
+
+  /**
+   * @param column The index of a {@link ColumnType#DOUBLE} column
+   * @param row    The index of the row in the batch
+   * @return The value, or 0 if the value is null
+   */
+  public double getDouble(int column, int row) {
+    checkRow(row);
+    return getDoubleVector(column)[row];
+  }
+
+  /**
+   * Creates a {@link String} of a value in a {@link ColumnType#STRING} column.
+   *
+   * @param column The index of the column
+   * @param row    The index of the row in the batch
+   * @return The value, or null if the value is null
+   */
+  public String getString(int column, int row) {
+    checkRow(row);
+    int[] offsets = getStringOffsets(column);
+    if (nulls[column][row]) {
+      return null;
+    }
+    return new String(arena, offsets[row], lengths[column][row]);
+  }
+
+  /**
+   * Returns the values of an {@link ColumnType#INT} column. The elements from 0 to
+   * {@link #size()} are valid.
+   *
+   * @param column The index of the column
+   * @return The array of the values
+   */
+  public int[] getIntVector(int column) {
+    checkType(column, ColumnType.INT);
+    return ints[column];
+  }
+
+  /**
+   * Returns the values of a {@link ColumnType#LONG} column. The elements from 0 to
+   * {@link #size()} are valid.
+   *
+   * @param column The index of the column
+   * @return The array of the values
+   */
+  public long[] getLongVector(int column) {
+    checkType(column, ColumnType.LONG);
+    return longs[column];
+  }
+
+  /**
+   * Returns the values of a {@link ColumnType#DOUBLE} column. The elements from 0 to
+   * {@link #size()} are valid.
+   *
+   * @param column The index of the column
+   * @return The array of the values
+   */
+  public double[] getDoubleVector(int column) {
+    checkType(column, ColumnType.DOUBLE);
+    return doubles[column];
+  }
+
+  /**
+   * Returns the null mask of a column. The elements from 0 to {@link #size()} are valid.
+   *
+   * @param column The index of the column
+   * @return The array whose element is true if the value is null
+   */
+  public boolean[] getNullMask(int column) {
+    return nulls[column];
+  }
+
+  /**
+   * Returns the character arena that holds the characters of the values of the
+   * {@link ColumnType#STRING} columns.
+   *
+   * @return The arena
+   * @see #getStringOffsets(int)
+   * @see #getStringLengths(int)
+   */
+  public char[] getArena() {
+    return arena;
+  }
+
+  /**
+   * Returns the offsets of the values of a {@link ColumnType#STRING} column in the arena. The
+   * elements from 0 to {@link #size()} are valid.
+   *
+   * @param column The index of the column
+   * @return The array of the offsets
+   */
+  public int[] getStringOffsets(int column) {
+    checkType(column, ColumnType.STRING);
+    return offsets[column];
+  }
+
+  /**
+   * Returns the lengths of the values of a {@link ColumnType#STRING} column. The elements from 0
+   * to {@link #size()} are valid.
+   *
+   * @param column The index of the column
+   * @return The array of the lengths
+   */
+  public int[] getStringLengths(int column) {
+    checkType(column, ColumnType.STRING);
+    return lengths[column];
+  }
+
+  /**
+   * Adds a row whose values are all null.
+   */
+  void addRow() {
+    if (size == capacity) {
+      throw new IllegalStateException("The batch is full");
+    }
+    int row = size++;
+    for (int i = 0; i < types.length; i++) {
+      nulls[i][row] = true;
+      switch (types[i]) {
+        case INT:
+          ints[i][row] = 0;
+          break;
+        case LONG:
+          longs[i][row] = 0;
+          break;
+        case DOUBLE:
+          doubles[i][row] = 0;
+          break;
+        default:
+          offsets[i][row] = 0;
+          lengths[i][row] = 0;
+          break;
+      }
+    }
+  }
+
+  /**
+   * Sets a value of the last row. An empty value is left null.
+   *
+   * @param column The index of the column
+   * @param buffer the buffer that holds the characters of the value
+   * @param offset the offset of the value in the buffer
+   * @param length the length of the value
+   * @throws NumberFormatException If the value of a numeric column is not a number
+   */
+  void setValue(int column, char[] buffer, int offset, int length) {
+    if (column >= types.length || length == 0) {
+      return;
+    }
+    int row = size - 1;
+    switch (types[column]) {
+      case INT:
+        ints[column][row] = CharNumbers.parseInt(buffer, offset, length);
+        break;
+      case LONG:
+        longs[column][row] = CharNumbers.parseLong(buffer, offset, length);
+        break;
+      case DOUBLE:
+        doubles[column][row] = CharNumbers.parseDouble(buffer, offset, length);
+        break;
+      default:
+        if (arena.length - arenaLength < length) {
+          arena = Arrays.copyOf(arena, Math.max(arenaLength + length, arena.length * 2));
+        }
+        System.arraycopy(buffer, offset, arena, arenaLength, length);
+        offsets[column][row] = arenaLength;
+        lengths[column][row] = length;
+        arenaLength += length;
+        break;
+    }
+    nulls[column][row] = false;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+  }
+
+  private void checkType(int column, ColumnType type) {
+    if (types[column] != type) {
+      throw new IllegalArgumentException("Column " + column + " is " + types[column]);
+    }
+  }
+}
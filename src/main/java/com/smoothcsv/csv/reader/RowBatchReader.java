@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+
+/**
+ * CSV Reader that reads rows into the columns of a {@link RowBatch}.
+ * <p>
+ * The values of numeric columns are parsed from the input-buffer without creating a
+ * {@link String}, and the values of string columns are copied into the arena of the batch, so
+ * reading into a reused batch allocates almost nothing. Rows must be read by
+ * {@link #read(RowBatch)}; the other methods that read rows throw
+ * {@link IllegalStateException}. A header row can be skipped by {@link #skipRows(int)} before
+ * reading. If the columns are selected by name, the header row is skipped by
+ * {@link #read(RowBatch)}, since its values would be parsed as the types of the columns.
+ * </p>
+ *
+ * @author kohii
+ */
+public class RowBatchReader extends AbstractCsvReader<RowBatch> {
+
+  private RowBatch batch;
+
+  /**
+   * Constructs RowBatchReader.
+   *
+   * @param in         A Reader
+   * @param properties CSV Properties
+   */
+  public RowBatchReader(Reader in, CsvProperties properties) {
+    super(in, properties, CsvReadOption.DEFAULT);
+  }
+
+  /**
+   * Constructs RowBatchReader.
+   *
+   * @param in         A Reader
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   */
+  public RowBatchReader(Reader in, CsvProperties properties, CsvReadOption options) {
+    super(in, properties, options);
+  }
+
+  /**
+   * Clears the batch and reads rows into it until it is full or the end of the stream has been
+   * reached.
+   *
+   * @param batch The batch to fill
+   * @return The number of rows read, or 0 if the end of the stream has been reached
+   * @throws IOException           If an I/O error occurs
+   * @throws NumberFormatException If a value in a numeric column is not a number
+   */
+  public int read(RowBatch batch) throws IOException {
+    batch.clear();
+    // resolve the selected columns without passing the header values to the batch
+    skipHeader();
+    this.batch = batch;
+    try {
+      while (!batch.isFull() && readRow() != null) {
+        // read next row
+      }
+    } finally {
+      this.batch = null;
+    }
+    return batch.size();
+  }
+
+  @Override
+  protected RowBatch createNewRow(long rowIndex) {
+    if (batch == null) {
+      throw new IllegalStateException("Rows must be read by read(RowBatch)");
+    }
+    batch.addRow();
+    return batch;
+  }
+
+  @Override
+  protected void handleValue(RowBatch row, long rowIndex, int columnIndex, char[] buffer,
+                             int offset, int length) {
+    try {
+      row.setValue(columnIndex, buffer, offset, length);
+    } catch (NumberFormatException e) {
+      NumberFormatException ex = new NumberFormatException(
+          e.getMessage() + " at row " + rowIndex + ", column " + columnIndex);
+      ex.initCause(e);
+      throw ex;
+    }
+  }
+
+  @Override
+  protected void handleValue(RowBatch row, long rowIndex, int columnIndex, String value) {
+    char[] chars = value.toCharArray();
+    handleValue(row, rowIndex, columnIndex, chars, 0, chars.length);
+  }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import com.smoothcsv.csv.prop.QuoteEscapeRule;
+
+/**
+ * Byte offsets of every N-th row of a CSV input, which let
+ * {@link AbstractByteCsvReader#seekToRow(long)} jump close to a row instead of reading all rows
+ * before it.
+ * <p>
+ * The index is built by scanning the input once, taking quoted line breaks into account. Row
+ * indices are the same as {@link AbstractByteCsvReader#getRowIndex()}, so the index must be used
+ * with the same {@link CsvProperties} and {@link CsvReadOption} as it was built with.
+ * </p>
+ * <p>
+ * The index of a file can be saved to a sidecar file and loaded on the next open, which maps the
+ * offsets into memory instead of scanning the file again. See
+ * {@link #open(Path, CsvProperties, CsvReadOption)}. A loaded index holds the mapping of the index
+ * file until it is closed, which on some platforms prevents the index file from being deleted or
+ * replaced. Closing a built index does nothing.
+ * </p>
+ *
+ * @author kohii
+ */
+public class RowOffsetIndex implements Closeable {
+
+  /**
+   * Default number of rows between indexed rows.
+   */
+  public static final int DEFAULT_INTERVAL = 1024;
+
+  /**
+   * Suffix of the name of the sidecar file of {@link #open(Path, CsvProperties, CsvReadOption)}.
+   */
+  public static final String SIDECAR_SUFFIX = ".idx";
+
+  /**
+   * "SCSVRIDX" in ASCII.
+   */
+  private static final long MAGIC = 0x5343535652494458L;
+
+  private static final int VERSION = 1;
+
+  /**
+   * Size of the header of an index file. The offsets follow the header.
+   */
+  private static final int HEADER_SIZE = 64;
+
+  /**
+   * Number of bytes at the head and at the tail of a file included in its content hash.
+   */
+  private static final int HASHED_BYTES = 65536;
+
+  private final int interval;
+
+  /**
+   * The element k is the offset of the row k * interval.
+   */
+  private final LongBuffer offsets;
+
+  private final long rowCount;
+
+  private final long size;
+
+  /**
+   * The mapped buffer of the index file that holds the offsets, or null if the index was built.
+   */
+  private final ByteBuffer mapped;
+
+  private boolean closed;
+
+  /**
+   * Constructs RowOffsetIndex.
+   *
+   * @param interval The number of rows between indexed rows
+   * @param offsets  The offsets of the indexed rows
+   * @param rowCount The number of rows in the input
+   * @param size     The size of the input in bytes
+   */
+  RowOffsetIndex(int interval, LongBuffer offsets, long rowCount, long size) {
+    this(interval, offsets, rowCount, size, null);
+  }
+
+  private RowOffsetIndex(int interval, LongBuffer offsets, long rowCount, long size,
+                         ByteBuffer mapped) {
+    this.interval = interval;
+    this.offsets = offsets;
+    this.rowCount = rowCount;
+    this.size = size;
+    this.mapped = mapped;
+  }
+
+  /**
+   * Builds the index of a file with {@link #DEFAULT_INTERVAL}.
+   *
+   * @param path       The path of the file
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   * @return The index
+   * @throws IOException If an I/O error occurs
+   */
+  public static RowOffsetIndex build(Path path, CsvProperties properties, CsvReadOption options)
+      throws IOException {
+    return build(ByteInput.map(path), properties, options, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Builds the index of an input. The input is closed when the index has been built.
+   *
+   * @param in         A ByteInput
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   * @param interval   The number of rows between indexed rows
+   * @return The index
+   * @throws IOException If an I/O error occurs
+   */
+  public static RowOffsetIndex build(ByteInput in, CsvProperties properties,
+                                     CsvReadOption options, int interval) throws IOException {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("interval must be positive");
+    }
+    try (Scanner scanner = new Scanner(in, properties, options)) {
+      long[] offsets = new long[16];
+      int n = 0;
+      do {
+        if (scanner.getRowIndex() >= (long) n * interval) {
+          if (n == offsets.length) {
+            offsets = Arrays.copyOf(offsets, n * 2);
+          }
+          offsets[n++] = scanner.getPosition();
+        }
+      } while (scanner.scanRow());
+      return new RowOffsetIndex(interval, LongBuffer.wrap(offsets, 0, n).slice(),
+          scanner.getRowIndex(), scanner.getPosition());
+    }
+  }
+
+  /**
+   * Returns the index of a file, which is loaded from the sidecar file next to the file if it is
+   * up to date. Otherwise the index is built and saved to the sidecar file, whose name is the name
+   * of the file followed by {@link #SIDECAR_SUFFIX}. If the sidecar file cannot be written, the
+   * built index is returned without being saved.
+   *
+   * @param path       The path of the file
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   * @return The index
+   * @throws IOException If an I/O error occurs reading the file
+   * @see #load(Path, Path, CsvProperties, CsvReadOption)
+   */
+  public static RowOffsetIndex open(Path path, CsvProperties properties, CsvReadOption options)
+      throws IOException {
+    Path indexFile = path.resolveSibling(path.getFileName() + SIDECAR_SUFFIX);
+    RowOffsetIndex index = load(indexFile, path, properties, options);
+    if (index != null) {
+      return index;
+    }
+    index = build(path, properties, options);
+    try {
+      index.save(indexFile, path, properties, options);
+    } catch (IOException e) {
+      // the index is still usable
+    }
+    return index;
+  }
+
+  /**
+   * Loads an index saved by {@link #save(Path, Path, CsvProperties, CsvReadOption)}. The offsets
+   * are read through a memory-mapped buffer, which is released by {@link #close()}. The header of
+   * the index file is read and validated before the offsets are mapped, so nothing is mapped if
+   * the index is discarded.
+   * <p>
+   * The index is discarded if the file has changed since the index was saved, which is detected by
+   * the size, the last modified time, and a hash of the bytes at the head and at the tail of the
+   * file. It is also discarded if the properties or the options that affect the row boundaries
+   * differ.
+   * </p>
+   *
+   * @param indexFile  The path of the index file
+   * @param path       The path of the indexed file
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   * @return The index, or null if the index file does not exist or is not up to date
+   * @throws IOException If an I/O error occurs
+   */
+  public static RowOffsetIndex load(Path indexFile, Path path, CsvProperties properties,
+                                    CsvReadOption options) throws IOException {
+    if (!Files.isRegularFile(indexFile)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+        return null;
+      }
+      ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE);
+      while (b.hasRemaining() && channel.read(b) >= 0) {
+        // read until the header is full
+      }
+      if (b.hasRemaining()
+          || b.getLong(0) != MAGIC || b.getInt(8) != VERSION
+          || b.getLong(16) != getDialect(properties, options)) {
+        return null;
+      }
+      int interval = b.getInt(24);
+      int offsetCount = b.getInt(28);
+      long rowCount = b.getLong(32);
+      long size = b.getLong(40);
+      if (interval <= 0 || offsetCount <= 0
+          || length != HEADER_SIZE + (long) offsetCount * Long.BYTES) {
+        return null;
+      }
+      if (Files.size(path) != size
+          || Files.getLastModifiedTime(path).toMillis() != b.getLong(48)
+          || hashContent(path) != b.getLong(56)) {
+        return null;
+      }
+      ByteBuffer mapped =
+          channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length - HEADER_SIZE);
+      return new RowOffsetIndex(interval, mapped.asLongBuffer(), rowCount, size, mapped);
+    }
+  }
+
+  /**
+   * Saves this index to a file. The file is replaced atomically if the file system supports it.
+   *
+   * @param indexFile  The path of the index file
+   * @param path       The path of the indexed file
+   * @param properties CSV Properties this index was built with
+   * @param options    Options this index was built with
+   * @throws IOException If an I/O error occurs
+   */
+  public void save(Path indexFile, Path path, CsvProperties properties, CsvReadOption options)
+      throws IOException {
+    ensureOpen();
+    int offsetCount = getOffsetCount();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putLong(MAGIC)
+        .putInt(VERSION)
+        .putInt(0)
+        .putLong(getDialect(properties, options))
+        .putInt(interval)
+        .putInt(offsetCount)
+        .putLong(rowCount)
+        .putLong(size)
+        .putLong(Files.getLastModifiedTime(path).toMillis())
+        .putLong(hashContent(path))
+        .flip();
+    ByteBuffer body = ByteBuffer.allocate(offsetCount * Long.BYTES);
+    body.asLongBuffer().put(offsets.duplicate());
+
+    Path dir = indexFile.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(dir, indexFile.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        ByteBuffer[] buffers = {header, body};
+        while (body.hasRemaining()) {
+          channel.write(buffers);
+        }
+      }
+      try {
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Encodes the properties and the options that affect the row boundaries and the row indices.
+   *
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   * @return The encoded value
+   */
+  private static long getDialect(CsvProperties properties, CsvReadOption options) {
+    QuoteEscapeRule escapeRule = properties.getQuoteEscapeRule();
+    long dialect = properties.getDelimiter();
+    dialect = dialect << 16 | properties.getQuoteChar();
+    dialect = dialect << 16 | escapeRule.getEscapeChar();
+    dialect = dialect << 4 | escapeRule.getStrategy().ordinal();
+    dialect = dialect << 1 | (options.isStrictQuotes() ? 1 : 0);
+    dialect = dialect << 1 | (options.isIgnoreLeadingWhiteSpace() ? 1 : 0);
+    dialect = dialect << 1 | (options.isSkipCommentLines() ? 1 : 0);
+    dialect = dialect << 1 | (options.isSkipEmptyLines() ? 1 : 0);
+    return dialect;
+  }
+
+  /**
+   * Computes a hash of the bytes at the head and at the tail of a file.
+   *
+   * @param path The path of the file
+   * @return The hash
+   * @throws IOException If an I/O error occurs
+   */
+  private static long hashContent(Path path) throws IOException {
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer b = ByteBuffer.allocate((int) Math.min(size, HASHED_BYTES));
+      for (long position : new long[]{0, Math.max(0, size - HASHED_BYTES)}) {
+        b.clear();
+        while (b.hasRemaining() && channel.read(b, position + b.position()) >= 0) {
+          // read until the buffer is full
+        }
+        b.flip();
+        crc.update(b.array(), 0, b.limit());
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * @return The number of rows between indexed rows
+   */
+  public int getInterval() {
+    return interval;
+  }
+
+  /**
+   * @return The number of rows in the input
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * @return The size of the input in bytes
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Releases the mapped buffer of an index loaded from a file, so that the index file can be
+   * deleted or replaced. The offsets of a closed index cannot be read. Closing a built index does
+   * nothing.
+   */
+  @Override
+  public void close() {
+    if (mapped != null && !closed) {
+      closed = true;
+      MappedBuffers.unmap(mapped);
+    }
+  }
+
+  /**
+   * Returns the index of the nearest indexed row at or before the specified row.
+   *
+   * @param row The row index
+   * @return The index of the indexed row
+   */
+  public long getIndexedRow(long row) {
+    return slot(row) * (long) interval;
+  }
+
+  /**
+   * Returns the byte offset of the nearest indexed row at or before the specified row.
+   *
+   * @param row The row index
+   * @return The offset of the beginning of the row {@link #getIndexedRow(long)}
+   */
+  public long getOffset(long row) {
+    return getOffsetAt(slot(row));
+  }
+
+  /**
+   * @return The number of the indexed rows
+   */
+  int getOffsetCount() {
+    return offsets.limit();
+  }
+
+  /**
+   * @param k The index of the indexed row
+   * @return The offset of the row k * {@link #getInterval()}
+   */
+  long getOffsetAt(int k) {
+    ensureOpen();
+    return offsets.get(k);
+  }
+
+  private int slot(long row) {
+    if (row < 0) {
+      throw new IllegalArgumentException("Negative row index: " + row);
+    }
+    return (int) Math.min(row / interval, offsets.limit() - 1);
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      // the buffer must not be accessed after it is unmapped
+      throw new IllegalStateException("The index has been closed");
+    }
+  }
+
+  /**
+   * A reader that only scans rows. Its rows hold nothing.
+   */
+  private static final class Scanner extends AbstractByteCsvReader<Object> {
+
+    private static final Object EMPTY_ROW = new Object();
+
+    Scanner(ByteInput in, CsvProperties properties, CsvReadOption options) {
+      super(in, properties, options);
+    }
+
+    @Override
+    protected Object createNewRow(long rowIndex) {
+      return EMPTY_ROW;
+    }
+
+    @Override
+    protected void handleValue(Object row, long rowIndex, int columnIndex, ByteBuffer buffer,
+                               int offset, int length) {
+      // do nothing
+    }
+
+    @Override
+    protected void handleValue(Object row, long rowIndex, int columnIndex, String value) {
+      // do nothing
+    }
+  }
+}
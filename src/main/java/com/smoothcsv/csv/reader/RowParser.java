@@ -0,0 +1,1004 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import com.smoothcsv.csv.prop.LineSeparator;
+import com.smoothcsv.csv.prop.QuoteEscapeRule;
+import com.smoothcsv.csv.prop.QuoteEscapeStrategy;
+
+/**
+ * The parser of rows shared by {@link AbstractCsvReader} and {@link AbstractByteCsvReader}.
+ * <p>
+ * The rows are parsed from an input-buffer of units, which are characters for
+ * {@link AbstractCsvReader} and UTF-8 bytes for {@link AbstractByteCsvReader}. A unit is passed
+ * around as an int, a character as its code and a byte as its signed value, so the separator, the
+ * quote and the escape character must be ASCII characters to be found in bytes. A subclass holds
+ * the input-buffer and the buffer of a value, and passes the values to its hooks.
+ * </p>
+ *
+ * @param <R> The class that holds values of one row.
+ * @author kohii
+ */
+abstract class RowParser<R> {
+
+  /**
+   * Initial size of the buffer to hold a value that cannot be passed directly from the input-buffer.
+   */
+  static final int INITIAL_FIELD_BUFFER_SIZE = 128;
+
+  /**
+   * Null character.
+   */
+  static final int NULL_UNIT = 0;
+
+  /**
+   * Returned by {@link #parseRow()} when an empty line or a comment line has been skipped.
+   */
+  static final Object NO_ROW = new Object();
+
+  /**
+   * Returned by {@link #parseRow()} when a row has been read in the scanning mode.
+   */
+  static final Object SCANNED_ROW = new Object();
+
+  /**
+   * if true, characters outside the quotes are ignored.
+   */
+  protected final boolean strictQuotes;
+
+  /**
+   * if true, white space in front of a quote in a field is ignored.
+   */
+  protected final boolean ignoreLeadingWhiteSpace;
+
+  /**
+   * if true, lines that starts with <code>#</code> are skipped.
+   */
+  protected final boolean skipCommentLines;
+
+  /**
+   * if true, empty lines are skipped.
+   */
+  protected final boolean skipEmptyLines;
+
+  /**
+   * The separator, the quote and the escape character as units. If {@link #escapeUnit} equals
+   * {@link #NULL_UNIT}, quotes must be represented by a pair of quotes.
+   */
+  final int separatorUnit;
+  final int quoteUnit;
+  final int escapeUnit;
+
+  /**
+   * Columns to read, or null to read all columns.
+   */
+  private final ColumnSelection columnSelection;
+
+  /**
+   * Minimum count of columns read by this reader.
+   */
+  private int minColumnCount;
+
+  /**
+   * Maximum count of columns read by this reader.
+   */
+  private int maxColumnCount;
+
+  /**
+   * The offset in the input of the index 0 of the input-buffer, and the index of the next unit to
+   * read and the end of the units in the input-buffer.
+   */
+  long bufferBase;
+  int nextIndex, limit;
+
+  /**
+   * The offset of the row being read, in the same unit as {@link #bufferBase}.
+   */
+  long rowStart;
+  boolean bomChecked;
+  long rowIndex;
+
+  /**
+   * if true, rows are parsed without calling any hook.
+   */
+  boolean scanning;
+
+  /**
+   * The value being read is the units in the field buffer of the subclass, the number of which is
+   * {@link #fieldLength}, followed by the units in the range of the input-buffer from
+   * {@link #sliceStart} to {@link #sliceEnd}.
+   */
+  int fieldLength;
+  int sliceStart, sliceEnd;
+
+  /**
+   * selectedColumns[i] is true if the column i is read. If null, all columns are read.
+   */
+  boolean[] selectedColumns;
+
+  /**
+   * if true, the columns are selected by name and the header row has not been read yet. The values
+   * of the header row are collected in {@link #headerValues}.
+   */
+  boolean headerPending;
+  List<String> headerValues;
+
+  /**
+   * if true, the column being read is not selected and its units are not kept.
+   */
+  private boolean skipValue;
+
+  /**
+   * if true, a row scanned in the scanning mode is suspended when the input throws
+   * {@link IncompleteTextException}, and the next call of {@link #parseRow()} resumes it.
+   */
+  boolean suspendable;
+
+  /**
+   * The state of the suspended row, or null.
+   */
+  private Suspension suspension;
+
+  /**
+   * Constructs RowParser.
+   *
+   * @param properties CSV Properties
+   * @param options    Options how to read the CSV
+   */
+  RowParser(CsvProperties properties, CsvReadOption options) {
+
+    this.separatorUnit = properties.getDelimiter();
+    this.quoteUnit = properties.getQuoteChar();
+    QuoteEscapeRule quoteEscapeRule = properties.getQuoteEscapeRule();
+    this.escapeUnit = quoteEscapeRule.getStrategy() == QuoteEscapeStrategy.REPEAT_QUOTE_CHAR
+        ? NULL_UNIT
+        : quoteEscapeRule.getEscapeChar();
+
+    this.strictQuotes = options.isStrictQuotes();
+    this.ignoreLeadingWhiteSpace = options.isIgnoreLeadingWhiteSpace();
+    this.skipCommentLines = options.isSkipCommentLines();
+    this.skipEmptyLines = options.isSkipEmptyLines();
+    this.columnSelection = options.getColumns();
+  }
+
+  /**
+   * Constructs a parser with the same properties and options as another parser.
+   *
+   * @param parent The parser to copy the properties and the options from
+   */
+  RowParser(RowParser<R> parent) {
+
+    this.separatorUnit = parent.separatorUnit;
+    this.quoteUnit = parent.quoteUnit;
+    this.escapeUnit = parent.escapeUnit;
+
+    this.strictQuotes = parent.strictQuotes;
+    this.ignoreLeadingWhiteSpace = parent.ignoreLeadingWhiteSpace;
+    this.skipCommentLines = parent.skipCommentLines;
+    this.skipEmptyLines = parent.skipEmptyLines;
+    this.columnSelection = parent.columnSelection;
+  }
+
+  /**
+   * Resets the state of the rows for a new input.
+   */
+  void resetRows() {
+    this.nextIndex = this.limit = 0;
+    this.bufferBase = 0;
+    this.bomChecked = false;
+    this.rowIndex = 0;
+    clearValue();
+    this.headerPending = columnSelection != null && columnSelection.isByName();
+    this.selectedColumns = columnSelection == null || headerPending
+        ? null
+        : columnSelection.resolve();
+    this.headerValues = headerPending ? new ArrayList<>() : null;
+
+    this.minColumnCount = -1;
+    this.maxColumnCount = -1;
+  }
+
+  /**
+   * Makes this parser continue the rows of another parser, whose input this parser reads next.
+   *
+   * @param parent The parser that has read the rows before
+   */
+  void continueRows(RowParser<R> parent) {
+    this.bomChecked = parent.bomChecked;
+    this.rowIndex = parent.rowIndex;
+    this.selectedColumns = parent.selectedColumns;
+    this.headerPending = parent.headerPending;
+    this.headerValues = headerPending ? new ArrayList<>() : null;
+  }
+
+  /**
+   * @return Current row index.
+   */
+  public long getRowIndex() {
+    return rowIndex;
+  }
+
+  /**
+   * @return Maximum number of columns that read by this reader
+   */
+  public int getMaxColumnCount() {
+    return maxColumnCount;
+  }
+
+  /**
+   * @return Minimum number of columns that read by this reader
+   */
+  public int getMinColumnCount() {
+    return minColumnCount;
+  }
+
+  /**
+   * Reads values in one row.
+   *
+   * @return Object containing the values of the row, or null if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  @SuppressWarnings("unchecked")
+  public R readRow() throws IOException {
+    ensureOpen();
+    Object row;
+    do {
+      row = parseRow();
+    } while (row == NO_ROW);
+    return (R) row;
+  }
+
+  /**
+   * Parses one row, or skips one empty line or comment line.
+   *
+   * @return Object containing the values of the row, {@link #NO_ROW} if no row has been read,
+   * {@link #SCANNED_ROW} if a row has been read without creating a row object, or null if the end
+   * of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  final Object parseRow() throws IOException {
+    R rowData = null;
+    boolean isEmptyLine;
+    boolean inQuotes;
+    boolean inField;
+    int columnCount;
+    int prev;
+    int i;
+    if (suspension != null) {
+      // resume the row from the unit where it has been suspended
+      Suspension s = suspension;
+      suspension = null;
+      isEmptyLine = s.isEmptyLine;
+      inQuotes = s.inQuotes;
+      inField = s.inField;
+      columnCount = s.columnCount;
+      prev = s.prev;
+      i = (int) (s.offset - bufferBase);
+    } else {
+      rowStart = bufferBase + nextIndex;
+      if (nextIndex >= limit) {
+        fill();
+      }
+      if (nextIndex >= limit) {
+        // EOF
+        return null;
+      }
+      if (!bomChecked) {
+        bomChecked = true;
+        int bomLength = bomLength(nextIndex);
+        if (bomLength > 0) {
+          // if the first character equals UTF-8 BOM, we skip the character.
+          nextIndex += bomLength;
+          if (nextIndex >= limit) {
+            return NO_ROW;
+          }
+        }
+      }
+      if (skipCommentLines && unitAt(nextIndex) == '#') {
+        // if the first character of the line equals '#', we skip the line.
+        skipRow();
+        return NO_ROW;
+      }
+      clearValue();
+      int first = unitAt(nextIndex);
+      isEmptyLine = first == '\n' || first == '\r';
+      rowData = startRow();
+      inQuotes = false;
+      inField = false;
+      columnCount = 0;
+      skipValue = isValueSkippable(0);
+      prev = NULL_UNIT;
+      i = nextIndex;
+    }
+    LineSeparator lineSeparator = null;
+    try {
+      for (; ; ) {
+        if (i >= limit) {
+          // the units in the input-buffer will be overwritten
+          flushSlice();
+          boolean filled = fill();
+          i = nextIndex;
+          if (!filled) {
+            break; // EOF
+          }
+        }
+
+        // scan a run of units that have no special meaning in the current context
+        int runStart = i;
+        if (inQuotes) {
+          i = scanQuoted(i);
+        } else {
+          i = scanUnquoted(i);
+        }
+        if (i > runStart) {
+          if (!strictQuotes || inQuotes) {
+            appendRangeToValue(runStart, i);
+            inField = true;
+          }
+          prev = unitAt(i - 1);
+          continue;
+        }
+
+        int c = unitAt(i);
+        // position of c in the input-buffer, or -1 if it has been refilled since c was read
+        int pos = i;
+        int next = NULL_UNIT;
+        if (c == escapeUnit || c == quoteUnit || c == '\r') {
+          // only these units depend on the next unit
+          if (i + 1 < limit) {
+            next = unitAt(i + 1);
+          } else {
+            // the units in the input-buffer will be overwritten
+            flushSlice();
+            pos = -1;
+            if (fill()) {
+              next = unitAt(nextIndex);
+            }
+            i = nextIndex - 1;
+          }
+        }
+        // i is the position of next from here
+
+        if (c == escapeUnit) {
+          if (isNextCharacterEscapable(next, inQuotes || inField)) {
+            appendToValue(i + 1);
+            prev = next;
+            i += 2;
+            continue;
+          }
+        } else if (c == quoteUnit) {
+          if (isNextCharacterEscapedQuote(next, inQuotes || inField)) {
+            appendToValue(i + 1);
+            inField = !inField;
+            prev = next;
+            i += 2;
+            continue;
+          }
+
+          // the tricky case of an embedded quote in the middle: a,bc"d"ef,g
+          if (!inQuotes && !strictQuotes) {
+            if (prev != NULL_UNIT // not on the beginning of the line
+                && prev != separatorUnit // not at the beginning of an escape sequence
+                && (next != '\r' && next != '\n' && next != separatorUnit) // not at the end of an escape sequence
+            ) {
+              if (ignoreLeadingWhiteSpace && !isValueEmpty() && isValueAllWhiteSpace()) {
+                clearValue(); // discard white space leading up to quote
+              } else {
+                appendToValue(pos, c);
+                prev = c;
+                i++;
+                continue;
+              }
+            }
+          }
+
+          inQuotes = !inQuotes;
+          inField = !inField;
+        } else if (c == separatorUnit && !inQuotes) {
+          rowData = endValue(rowData, columnCount++);
+          clearValue(); // start work on next token
+          skipValue = isValueSkippable(columnCount);
+          inField = false;
+        } else if (c == '\r' && !inQuotes) {
+          if (next == '\n') {
+            i++;
+            lineSeparator = LineSeparator.CRLF;
+          } else {
+            lineSeparator = LineSeparator.CR;
+          }
+          i++;
+          break; // EOL
+        } else if (c == '\n' && !inQuotes) {
+          lineSeparator = LineSeparator.LF;
+          i++;
+          break; // EOL
+        } else {
+          if (!strictQuotes || inQuotes) {
+            appendToValue(pos, c);
+            inField = true;
+          }
+        }
+        prev = c;
+        i++;
+      }
+
+    } catch (IncompleteTextException e) {
+      if (suspendable && scanning) {
+        // i is the unit to read next, and the units before it have been moved to the field buffer
+        Suspension s = new Suspension();
+        s.offset = bufferBase + i;
+        s.isEmptyLine = isEmptyLine;
+        s.inQuotes = inQuotes;
+        s.inField = inField;
+        s.columnCount = columnCount;
+        s.prev = prev;
+        suspension = s;
+      }
+      throw e;
+    }
+
+    nextIndex = i;
+    if (isEmptyLine) {
+      if (skipEmptyLines) {
+        return NO_ROW;
+      } else {
+        // keep row empty
+      }
+    } else {
+      rowData = endValue(rowData, columnCount++);
+    }
+
+    minColumnCount = minColumnCount == -1 ? columnCount : Math.min(minColumnCount, columnCount);
+    maxColumnCount = maxColumnCount == -1 ? columnCount : Math.max(maxColumnCount, columnCount);
+
+    if (isRowRejected()) {
+      rowIndex++;
+      return NO_ROW;
+    }
+
+    if (headerPending) {
+      readHeader(rowData);
+    }
+
+    if (!scanning) {
+      handleLineSeparator(rowData, rowIndex, lineSeparator);
+    }
+
+    rowIndex++;
+
+    return scanning ? SCANNED_ROW : rowData;
+  }
+
+  /**
+   * Consumes rows in the same way as {@link #readRow()} but without calling any hook.
+   *
+   * @param maxRows The maximum number of rows to consume
+   * @return The number of rows consumed, not counting empty lines and comment lines skipped
+   * @throws IOException If an I/O error occurs
+   */
+  final int scanRows(int maxRows) throws IOException {
+    scanning = true;
+    try {
+      int rowCount = 0;
+      Object row;
+      while (rowCount < maxRows && (row = parseRow()) != null) {
+        if (row == SCANNED_ROW) {
+          rowCount++;
+        }
+      }
+      return rowCount;
+    } finally {
+      scanning = false;
+    }
+  }
+
+  /**
+   * Consumes one row, or one empty line or comment line, in the same way as {@link #readRow()}
+   * but without calling any hook. Unlike {@link #skipRows(int)}, quoted line breaks are taken into
+   * account.
+   *
+   * @return false if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  final boolean scanRow() throws IOException {
+    ensureOpen();
+    scanning = true;
+    try {
+      return parseRow() != null;
+    } finally {
+      scanning = false;
+    }
+  }
+
+  /**
+   * Reads the header row without passing its values to the hooks, if the columns are selected by
+   * name and the header row has not been read yet. The selected columns are resolved from the
+   * header row.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  final void skipHeader() throws IOException {
+    ensureOpen();
+    scanning = true;
+    try {
+      while (headerPending && parseRow() != null) {
+        // skip comment lines and empty lines before the header row
+      }
+    } finally {
+      scanning = false;
+    }
+  }
+
+  /**
+   * Makes this reader treat its input as a part of a larger input that starts at the specified
+   * offset. This must be called before reading any row.
+   *
+   * @param offset   the offset of the beginning of the input in the larger input
+   * @param rowIndex the index of the first row of the input
+   */
+  final void startAt(long offset, long rowIndex) {
+    this.bufferBase = offset;
+    this.bomChecked = offset != 0;
+    this.rowIndex = rowIndex;
+    if (offset != 0 && headerPending) {
+      // the header row is not in the input. the selected columns must be given.
+      selectColumns(null);
+    }
+  }
+
+  /**
+   * @return An array whose element is true if the column at the index is read, or null if all
+   * columns are read
+   */
+  final boolean[] getSelectedColumns() {
+    return selectedColumns;
+  }
+
+  /**
+   * Sets the columns to read, which have been resolved by another reader.
+   *
+   * @param selectedColumns An array whose element is true if the column at the index is read, or
+   *                        null to read all columns
+   */
+  final void selectColumns(boolean[] selectedColumns) {
+    this.selectedColumns = selectedColumns;
+    this.headerPending = false;
+    this.headerValues = null;
+  }
+
+  /**
+   * Returns the checkpoint of the current position, which must be between rows.
+   *
+   * @param byteOffset true if the offset is a byte offset
+   * @return The checkpoint
+   */
+  final CsvCheckpoint checkpointAt(boolean byteOffset) {
+    return new CsvCheckpoint(byteOffset, bufferBase + nextIndex, rowIndex, headerPending,
+        selectedColumns, minColumnCount, maxColumnCount);
+  }
+
+  /**
+   * Restores the state of the rows saved in a checkpoint, after the input has been moved to the
+   * offset of the checkpoint.
+   *
+   * @param checkpoint The checkpoint
+   */
+  final void restore(CsvCheckpoint checkpoint) {
+    bomChecked |= checkpoint.getOffset() != 0;
+    rowIndex = checkpoint.getRowIndex();
+    selectedColumns = checkpoint.getSelectedColumns();
+    headerPending = checkpoint.isHeaderPending();
+    headerValues = headerPending ? new ArrayList<>() : null;
+    minColumnCount = checkpoint.getMinColumnCount();
+    maxColumnCount = checkpoint.getMaxColumnCount();
+    clearValue();
+  }
+
+  /**
+   * Skips rows.
+   *
+   * @param n The number of rows to skip
+   * @return The number of rows actually skipped
+   * @throws IOException
+   */
+  public int skipRows(int n) throws IOException {
+    if (n < 0) {
+      throw new IllegalArgumentException("skipLines value is negative");
+    }
+    int skiped = 0;
+    for (int i = 0; i < n; i++) {
+      if (skipRow()) {
+        skiped++;
+      } else {
+        break;
+      }
+    }
+    return skiped;
+  }
+
+  /**
+   * Skips one row.
+   *
+   * @return True if a row actually skipped.
+   * @throws IOException
+   */
+  private boolean skipRow() throws IOException {
+    ensureOpen();
+    rowStart = bufferBase + nextIndex;
+    if (nextIndex >= limit) {
+      fill();
+    }
+    if (nextIndex >= limit) {
+      // EOF
+      return false;
+    }
+    // a CRLF can be split across two buffers
+    boolean isPrevCR = false;
+    do {
+      for (int i = nextIndex; i < limit; i++) {
+        int c = unitAt(i);
+        if (isPrevCR) {
+          if (c == '\n') {
+            nextIndex = i + 1;
+            rowIndex++;
+            return true;
+          } else {
+            nextIndex = i;
+            rowIndex++;
+            return true;
+          }
+        } else {
+          if (c == '\r') {
+            isPrevCR = true;
+          } else if (c == '\n') {
+            nextIndex = i + 1;
+            rowIndex++;
+            return true;
+          }
+        }
+      }
+    } while (fill());
+    return false;
+  }
+
+  /**
+   * Reads all CSV text and returns list of rows.
+   *
+   * @return
+   * @throws IOException
+   */
+  public List<R> readAll() throws IOException {
+    List<R> rows = new ArrayList<>();
+    R r;
+    while ((r = readRow()) != null) {
+      rows.add(r);
+    }
+    return rows;
+  }
+
+  /**
+   * Creates and returns object that holds values of one row.
+   *
+   * @param rowIndex current row index
+   * @return Object that holds values of one row.
+   */
+  protected abstract R createNewRow(long rowIndex);
+
+  /**
+   * Handles a line feed character.
+   *
+   * @param row
+   * @param rowIndex     current row index
+   * @param lineFeedCode
+   */
+  protected abstract void handleLineSeparator(R row, long rowIndex, LineSeparator lineFeedCode);
+
+  /**
+   * Starts a row.
+   *
+   * @return the row object, or null if no row object is created yet
+   */
+  R startRow() {
+    return scanning ? null : createNewRow(rowIndex);
+  }
+
+  /**
+   * @return true if the row that has been read is not passed to the hooks
+   */
+  boolean isRowRejected() {
+    return false;
+  }
+
+  /**
+   * Passes the value being read, which is not a value of the header row, to the hooks.
+   *
+   * @param row         the row object, or null if no row object has been created
+   * @param columnIndex the column index of the value
+   * @return the row object, or null if no row object has been created
+   */
+  abstract R passValue(R row, int columnIndex);
+
+  /**
+   * Passes a value of the header row in a selected column to the hooks.
+   *
+   * @param row         the row object of the header row
+   * @param columnIndex the column index of the value
+   * @param value       the value
+   */
+  abstract void passHeaderValue(R row, int columnIndex, String value);
+
+  /**
+   * Returns whether the units of a value in the specified column need not be kept.
+   *
+   * @param columnIndex the column index
+   * @return true if the column is not selected
+   */
+  boolean isValueSkippable(int columnIndex) {
+    if (selectedColumns == null || ignoreLeadingWhiteSpace) {
+      // ignoreLeadingWhiteSpace needs the units to handle a quote
+      return false;
+    }
+    return columnIndex >= selectedColumns.length || !selectedColumns[columnIndex];
+  }
+
+  /**
+   * Fills the input-buffer with the next units of the input. {@link #nextIndex} is then the index
+   * of the first unit read, and {@link #limit} is the end of the units.
+   *
+   * @return false if the end of the input has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  abstract boolean fill() throws IOException;
+
+  /**
+   * @param index the index in the input-buffer
+   * @return the unit at the index
+   */
+  abstract int unitAt(int index);
+
+  /**
+   * @param index the index in the input-buffer of the first unit of the input
+   * @return the number of units of the byte order mark at the index, or 0 if there is none
+   */
+  abstract int bomLength(int index);
+
+  /**
+   * Scans units that have no special meaning outside quotes.
+   *
+   * @param from the index in the input-buffer to start scanning
+   * @return the index of the first unit that has special meaning, or {@link #limit}
+   */
+  abstract int scanUnquoted(int from);
+
+  /**
+   * Scans units that have no special meaning inside quotes.
+   *
+   * @param from the index in the input-buffer to start scanning
+   * @return the index of the first unit that has special meaning, or {@link #limit}
+   */
+  abstract int scanQuoted(int from);
+
+  /**
+   * Appends the units in the specified range of the input-buffer to the field buffer, and adds
+   * their number to {@link #fieldLength}.
+   *
+   * @param from the start index in the input-buffer, inclusive
+   * @param to   the end index in the input-buffer, exclusive
+   */
+  abstract void copyToField(int from, int to);
+
+  /**
+   * Appends a unit to the field buffer, and increments {@link #fieldLength}.
+   *
+   * @param unit the unit
+   */
+  abstract void appendToField(int unit);
+
+  /**
+   * @return the value in the field buffer
+   */
+  abstract String fieldToString();
+
+  /**
+   * Checks to make sure that the stream has not been closed
+   */
+  abstract void ensureOpen() throws IOException;
+
+  /**
+   * Passes the value being read to {@link #passValue(Object, int)}, or collects it in
+   * {@link #headerValues} if the header row is being read.
+   *
+   * @param row         the row object, or null if no row object has been created
+   * @param columnIndex the column index of the value
+   * @return the row object, or null if no row object has been created
+   */
+  private R endValue(R row, int columnIndex) {
+    if (headerPending) {
+      flushSlice();
+      headerValues.add(fieldToString());
+      return row;
+    }
+    return passValue(row, columnIndex);
+  }
+
+  /**
+   * Resolves the selected columns from the values of the header row, and passes the values in the
+   * selected columns to {@link #passHeaderValue(Object, int, String)}.
+   *
+   * @param row the row object of the header row
+   */
+  private void readHeader(R row) {
+    selectedColumns = columnSelection.resolve(headerValues);
+    headerPending = false;
+    if (!scanning) {
+      for (int i = 0; i < selectedColumns.length; i++) {
+        if (selectedColumns[i]) {
+          passHeaderValue(row, i, headerValues.get(i));
+        }
+      }
+    }
+    headerValues = null;
+  }
+
+  /**
+   * precondition: the current unit is an escape
+   *
+   * @param next     the next unit
+   * @param inQuotes true if the current context is quoted
+   * @return true if the following unit is a quote
+   */
+  private boolean isNextCharacterEscapable(int next, boolean inQuotes) {
+    return inQuotes // we are in quotes, therefore there can be escaped quotes in here.
+        && next != NULL_UNIT // there is indeed another character to check.
+        && (next == quoteUnit || next == escapeUnit);
+  }
+
+  /**
+   * precondition: the current unit is a quote or an escape
+   *
+   * @param next     the next unit
+   * @param inQuotes true if the current context is quoted
+   * @return true if the following unit is a quote
+   */
+  private boolean isNextCharacterEscapedQuote(int next, boolean inQuotes) {
+    return inQuotes // we are in quotes, therefore there can be escaped quotes in here.
+        && next == quoteUnit;
+  }
+
+  /**
+   * Appends the unit at the specified position of the input-buffer to the value being read.
+   *
+   * @param pos the position of the unit in the input-buffer
+   */
+  private void appendToValue(int pos) {
+    appendRangeToValue(pos, pos + 1);
+  }
+
+  /**
+   * Appends the units in the specified range of the input-buffer to the value being read.
+   *
+   * @param from the start position in the input-buffer, inclusive
+   * @param to   the end position in the input-buffer, exclusive
+   */
+  private void appendRangeToValue(int from, int to) {
+    if (skipValue) {
+      return;
+    }
+    if (sliceStart == sliceEnd) {
+      sliceStart = from;
+      sliceEnd = to;
+    } else if (sliceEnd == from) {
+      sliceEnd = to;
+    } else {
+      flushSlice();
+      sliceStart = from;
+      sliceEnd = to;
+    }
+  }
+
+  /**
+   * Appends a unit to the value being read.
+   *
+   * @param pos the position of the unit in the input-buffer, or -1 if it is not in the
+   *            input-buffer
+   * @param c   the unit
+   */
+  private void appendToValue(int pos, int c) {
+    if (skipValue) {
+      return;
+    } else if (pos >= 0) {
+      appendToValue(pos);
+    } else {
+      flushSlice();
+      appendToField(c);
+    }
+  }
+
+  /**
+   * Copies the units in the slice of the input-buffer to the field buffer.
+   */
+  final void flushSlice() {
+    if (sliceEnd > sliceStart) {
+      copyToField(sliceStart, sliceEnd);
+    }
+    sliceStart = sliceEnd = 0;
+  }
+
+  final void clearValue() {
+    fieldLength = 0;
+    sliceStart = sliceEnd = 0;
+  }
+
+  private boolean isValueEmpty() {
+    return fieldLength == 0 && sliceStart == sliceEnd;
+  }
+
+  /**
+   * precondition: the value being read is not empty
+   *
+   * @return true if every character in the value being read is whitespace
+   */
+  private boolean isValueAllWhiteSpace() {
+    flushSlice();
+    String value = fieldToString();
+    for (int i = 0; i < value.length(); i++) {
+      if (!Character.isWhitespace(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The state of a row suspended in the middle.
+   */
+  private static final class Suspension {
+
+    /**
+     * The offset of the unit to read next, in the same unit as {@link #bufferBase}.
+     */
+    long offset;
+    boolean isEmptyLine;
+    boolean inQuotes;
+    boolean inField;
+    int columnCount;
+    int prev;
+  }
+
+  /**
+   * Thrown by the input of a parser that parses text given in chunks, when the parser needs units
+   * that have not been given yet.
+   */
+  static final class IncompleteTextException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final IncompleteTextException INSTANCE = new IncompleteTextException();
+
+    private IncompleteTextException() {
+      super("The text ends in the middle of a row");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      // thrown for every chunk of the input
+      return this;
+    }
+  }
+}
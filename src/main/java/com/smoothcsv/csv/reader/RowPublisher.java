@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Reactive Streams {@link Publisher} of the rows read by a reader.
+ * <p>
+ * The rows are read ahead by a task on the executor into a window of at most {@code prefetch}
+ * rows, and are passed to {@link Subscriber#onNext(Object)} as the subscriber requests them,
+ * either on the thread calling {@link Subscription#request(long)} or by another task on the
+ * executor, so the reading overlaps the processing of the subscriber. The reading task stops when
+ * the window is full, and is started again when the subscriber has taken half of the window, so
+ * no thread is blocked waiting for demand and no more than {@code prefetch} rows are kept.
+ * </p>
+ * <p>
+ * The publisher accepts one subscriber, and closes the reader when the rows are exhausted, an
+ * error occurs or the subscription is cancelled. The reader must create a new object for every
+ * row, as {@link DefaultCsvReader} does, because the rows are kept after the next row is read.
+ * This class needs <a href="http://www.reactive-streams.org/">Reactive Streams</a> on the
+ * classpath.
+ * </p>
+ *
+ * @param <R> The class that holds values of one row.
+ * @author kohii
+ */
+public class RowPublisher<R> implements Publisher<R> {
+
+  /**
+   * Default number of rows read ahead.
+   */
+  public static final int DEFAULT_PREFETCH = 256;
+
+  private final AbstractCsvReader<R> reader;
+
+  private final Executor executor;
+
+  private final int prefetch;
+
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  /**
+   * Constructs RowPublisher that reads {@link #DEFAULT_PREFETCH} rows ahead on
+   * {@link ForkJoinPool#commonPool()}.
+   *
+   * @param reader The reader
+   */
+  public RowPublisher(AbstractCsvReader<R> reader) {
+    this(reader, ForkJoinPool.commonPool(), DEFAULT_PREFETCH);
+  }
+
+  /**
+   * Constructs RowPublisher.
+   *
+   * @param reader   The reader
+   * @param executor The executor to run the task that reads rows
+   * @param prefetch The maximum number of rows read ahead
+   */
+  public RowPublisher(AbstractCsvReader<R> reader, Executor executor, int prefetch) {
+    if (prefetch <= 0) {
+      throw new IllegalArgumentException("prefetch must be positive");
+    }
+    this.reader = Objects.requireNonNull(reader);
+    this.executor = Objects.requireNonNull(executor);
+    this.prefetch = prefetch;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super R> subscriber) {
+    Objects.requireNonNull(subscriber);
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Subscription() {
+        @Override
+        public void request(long n) {
+          // do nothing
+        }
+
+        @Override
+        public void cancel() {
+          // do nothing
+        }
+      });
+      subscriber.onError(new IllegalStateException("RowPublisher allows only one subscriber"));
+      return;
+    }
+    RowSubscription subscription = new RowSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+    subscription.scheduleRead();
+  }
+
+  /**
+   * The subscription, which reads rows into {@link #queue} on the executor and passes them to the
+   * subscriber.
+   */
+  private final class RowSubscription implements Subscription {
+
+    private final Subscriber<? super R> subscriber;
+
+    private final Queue<R> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of rows in {@link #queue}.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong requested = new AtomicLong();
+
+    /**
+     * Non-zero while the task that reads rows is scheduled or running, and non-zero while rows are
+     * being passed to the subscriber. Each counts the calls that have not been handled.
+     */
+    private final AtomicInteger readWip = new AtomicInteger();
+    private final AtomicInteger drainWip = new AtomicInteger();
+
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    /**
+     * The error for an invalid request, which is passed to the subscriber instead of the rows.
+     */
+    private volatile Throwable requestError;
+
+    RowSubscription(Subscriber<? super R> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        requestError = new IllegalArgumentException("Non-positive request: " + n);
+        drain();
+        return;
+      }
+      long r;
+      do {
+        r = requested.get();
+      } while (!requested.compareAndSet(r, r + n < 0 ? Long.MAX_VALUE : r + n));
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      if (!cancelled) {
+        cancelled = true;
+        // the reader is closed by the task that reads rows
+        scheduleRead();
+      }
+    }
+
+    void scheduleRead() {
+      if (readWip.getAndIncrement() == 0) {
+        executor.execute(this::read);
+      }
+    }
+
+    /**
+     * Reads rows until the window is full.
+     */
+    private void read() {
+      int missed = 1;
+      for (; ; ) {
+        if (cancelled) {
+          queue.clear();
+          closeReader();
+          return;
+        }
+        if (!done) {
+          try {
+            while (queued.get() < prefetch && !cancelled) {
+              R row = reader.readRow();
+              if (row == null) {
+                closeReader();
+                done = true;
+                scheduleDrain();
+                break;
+              }
+              queue.offer(row);
+              queued.incrementAndGet();
+              scheduleDrain();
+            }
+          } catch (Throwable e) {
+            closeReader();
+            error = e;
+            done = true;
+            scheduleDrain();
+          }
+        }
+        missed = readWip.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Passes the rows to the subscriber on the calling thread, unless they are being passed.
+     */
+    private void drain() {
+      if (drainWip.getAndIncrement() == 0) {
+        drainLoop();
+      }
+    }
+
+    /**
+     * Passes the rows to the subscriber on the executor, unless they are being passed.
+     */
+    private void scheduleDrain() {
+      if (drainWip.getAndIncrement() == 0) {
+        executor.execute(this::drainLoop);
+      }
+    }
+
+    /**
+     * Passes the rows to the subscriber as many as requested.
+     */
+    private void drainLoop() {
+      int missed = 1;
+      for (; ; ) {
+        Throwable e = requestError;
+        if (e != null && !cancelled) {
+          cancel();
+          subscriber.onError(e);
+          return;
+        }
+        long r = requested.get();
+        long emitted = 0;
+        while (emitted != r) {
+          if (cancelled) {
+            return;
+          }
+          boolean d = done;
+          R row = queue.poll();
+          if (row == null) {
+            if (d) {
+              terminate();
+              return;
+            }
+            break;
+          }
+          queued.decrementAndGet();
+          subscriber.onNext(row);
+          emitted++;
+        }
+        if (cancelled) {
+          return;
+        }
+        if (emitted == r && done && queue.isEmpty()) {
+          terminate();
+          return;
+        }
+        if (emitted != 0) {
+          if (r != Long.MAX_VALUE) {
+            requested.addAndGet(-emitted);
+          }
+          if (!done && queued.get() <= prefetch / 2) {
+            scheduleRead();
+          }
+        }
+        missed = drainWip.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    private void terminate() {
+      cancelled = true;
+      Throwable e = error;
+      if (e != null) {
+        subscriber.onError(e);
+      } else {
+        subscriber.onComplete();
+      }
+    }
+
+    private void closeReader() {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        if (error == null && !done) {
+          error = e;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the rows of a reader.
+ * <p>
+ * {@link #trySplit()} reads the raw text of a batch of rows without constructing them, and returns
+ * a spliterator that parses the batch independently. The batches grow arithmetically like those of
+ * {@link java.util.Spliterators#spliteratorUnknownSize(java.util.Iterator, int)}.
+ * </p>
+ *
+ * @param <R> The class that holds values of one row.
+ * @author kohii
+ */
+abstract class RowSpliterator<R> implements Spliterator<R> {
+
+  /**
+   * Increment of the number of rows in a batch.
+   */
+  static final int BATCH_UNIT = 1 << 10;
+
+  /**
+   * Maximum number of rows in a batch.
+   */
+  static final int MAX_BATCH = 1 << 16;
+
+  private final int characteristics;
+  private long est;
+  private int batch;
+
+  /**
+   * Constructs RowSpliterator.
+   *
+   * @param rowCount The number of rows, or {@link Long#MAX_VALUE} if unknown
+   */
+  RowSpliterator(long rowCount) {
+    this.est = rowCount;
+    this.characteristics = rowCount == Long.MAX_VALUE
+        ? ORDERED | NONNULL
+        : ORDERED | NONNULL | SIZED | SUBSIZED;
+  }
+
+  /**
+   * Reads the next row.
+   *
+   * @return the row, or null if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  abstract R readRow() throws IOException;
+
+  /**
+   * Reads the raw text of the next rows and returns a spliterator over them.
+   *
+   * @param maxRows The maximum number of rows to read
+   * @return the spliterator, or null if the end of the stream has been reached
+   * @throws IOException If an I/O error occurs
+   */
+  abstract RowSpliterator<R> readBatch(int maxRows) throws IOException;
+
+  @Override
+  public boolean tryAdvance(Consumer<? super R> action) {
+    R row;
+    try {
+      row = readRow();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (row == null) {
+      return false;
+    }
+    if (est != Long.MAX_VALUE) {
+      est--;
+    }
+    action.accept(row);
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super R> action) {
+    while (tryAdvance(action)) {
+      // read next row
+    }
+  }
+
+  @Override
+  public Spliterator<R> trySplit() {
+    int n = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+    if (est != Long.MAX_VALUE) {
+      if (est < 2) {
+        return null;
+      }
+      n = (int) Math.min(n, est / 2);
+    }
+    RowSpliterator<R> prefix;
+    try {
+      prefix = readBatch(n);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (prefix == null) {
+      return null;
+    }
+    batch = n;
+    if (est != Long.MAX_VALUE) {
+      est -= prefix.est;
+    }
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return est;
+  }
+
+  @Override
+  public int characteristics() {
+    return characteristics;
+  }
+}
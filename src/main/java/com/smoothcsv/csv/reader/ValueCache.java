@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import java.util.Arrays;
+
+/**
+ * A cache of {@link String} values for each column, which lets a reader return the same
+ * {@link String} instance for equal values in a column instead of creating a new one for every
+ * row.
+ * <p>
+ * Each column has a table of a fixed number of slots, and a value is looked up in the slot
+ * selected by the hash code of its characters. A new value replaces the value in the slot. The
+ * cache keeps track of the hit rate of each column, and stops caching a column as soon as more
+ * than half of the lookups in a sample of {@value #SAMPLE_SIZE} values miss, since such a column
+ * has too many distinct values to benefit from the cache. The first sample of a column only fills
+ * its empty table and is not judged. A column that has stopped being cached is cached again after
+ * {@value #REPROBE_INTERVAL} lookups, in case its values have started repeating.
+ * </p>
+ * <p>
+ * A cache may be used by multiple threads, for example by a parallel stream of
+ * {@link AbstractCsvReader#rows()}. The values returned are always correct, but the statistics
+ * may then miss some lookups.
+ * </p>
+ *
+ * @author kohii
+ * @see AbstractCsvReader#setValueCache(ValueCache)
+ */
+public class ValueCache {
+
+  /**
+   * Default number of slots for each column.
+   */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  /**
+   * Maximum length of a cached value. Longer values are rarely repeated.
+   */
+  public static final int MAX_VALUE_LENGTH = 64;
+
+  /**
+   * Number of lookups whose hit rate decides whether a column keeps being cached.
+   */
+  public static final int SAMPLE_SIZE = 1024;
+
+  /**
+   * Number of lookups in a column that is not cached before the column is cached again.
+   */
+  public static final int REPROBE_INTERVAL = SAMPLE_SIZE * 64;
+
+  private static final int MAX_SAMPLE_MISSES = SAMPLE_SIZE / 2;
+
+  private final int mask;
+
+  private volatile Column[] columns = new Column[0];
+
+  /**
+   * Constructs ValueCache with {@link #DEFAULT_CAPACITY} slots for each column.
+   */
+  public ValueCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs ValueCache.
+   *
+   * @param capacity The number of slots for each column, which is rounded up to a power of two
+   */
+  public ValueCache(int capacity) {
+    if (capacity <= 0 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Illegal capacity: " + capacity);
+    }
+    this.mask = (capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1) - 1;
+  }
+
+  /**
+   * Returns a {@link String} of the specified characters.
+   *
+   * @param columnIndex The index of the column of the value
+   * @param buffer      the buffer that holds the characters of the value
+   * @param offset      the offset of the value in the buffer
+   * @param length      the length of the value
+   * @return the cached {@link String} equal to the value, or a new {@link String}
+   */
+  public String get(int columnIndex, char[] buffer, int offset, int length) {
+    if (length == 0) {
+      return "";
+    }
+    Column column = column(columnIndex);
+    String[] table = column.table;
+    if (table == null && length <= MAX_VALUE_LENGTH
+        && ++column.disabledLookups >= REPROBE_INTERVAL) {
+      // the values may have started repeating
+      table = column.enable(mask + 1);
+    }
+    if (table == null || length > MAX_VALUE_LENGTH) {
+      column.misses++;
+      return new String(buffer, offset, length);
+    }
+    // the same hash code as String#hashCode(), which the String caches
+    int h = 0;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      h = 31 * h + buffer[i];
+    }
+    int slot = (h ^ (h >>> 16)) & mask;
+    String value = table[slot];
+    if (value != null && value.hashCode() == h && equals(value, buffer, offset, length)) {
+      column.hits++;
+    } else {
+      column.misses++;
+      value = new String(buffer, offset, length);
+      if (++column.sampleMisses > MAX_SAMPLE_MISSES && column.warm) {
+        // too many distinct values
+        column.table = null;
+        column.disabledLookups = 0;
+        return value;
+      }
+      table[slot] = value;
+    }
+    if (++column.sampleLookups >= SAMPLE_SIZE) {
+      // the misses of the first sample are mostly the ones filling the empty table
+      column.warm = true;
+      column.sampleLookups = column.sampleMisses = 0;
+    }
+    return value;
+  }
+
+  /**
+   * @return The number of lookups that returned a cached value
+   */
+  public long getHitCount() {
+    long hits = 0;
+    for (Column column : columns) {
+      if (column != null) {
+        hits += column.hits;
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * @return The number of lookups that created a new value
+   */
+  public long getMissCount() {
+    long misses = 0;
+    for (Column column : columns) {
+      if (column != null) {
+        misses += column.misses;
+      }
+    }
+    return misses;
+  }
+
+  /**
+   * @return The ratio of the lookups that returned a cached value, or 0 if no value has been
+   * looked up
+   */
+  public double getHitRate() {
+    return hitRate(getHitCount(), getMissCount());
+  }
+
+  /**
+   * @param columnIndex The index of the column
+   * @return The number of lookups in the column that returned a cached value
+   */
+  public long getHitCount(int columnIndex) {
+    Column column = find(columnIndex);
+    return column == null ? 0 : column.hits;
+  }
+
+  /**
+   * @param columnIndex The index of the column
+   * @return The number of lookups in the column that created a new value
+   */
+  public long getMissCount(int columnIndex) {
+    Column column = find(columnIndex);
+    return column == null ? 0 : column.misses;
+  }
+
+  /**
+   * @param columnIndex The index of the column
+   * @return The ratio of the lookups in the column that returned a cached value, or 0 if no value
+   * has been looked up
+   */
+  public double getHitRate(int columnIndex) {
+    return hitRate(getHitCount(columnIndex), getMissCount(columnIndex));
+  }
+
+  /**
+   * @param columnIndex The index of the column
+   * @return false if the cache has stopped caching the column because of a low hit rate
+   */
+  public boolean isEnabled(int columnIndex) {
+    Column column = find(columnIndex);
+    return column == null || column.table != null;
+  }
+
+  private Column find(int columnIndex) {
+    Column[] columns = this.columns;
+    return columnIndex < columns.length ? columns[columnIndex] : null;
+  }
+
+  private Column column(int columnIndex) {
+    Column column = find(columnIndex);
+    return column != null ? column : addColumn(columnIndex);
+  }
+
+  private synchronized Column addColumn(int columnIndex) {
+    Column[] columns = this.columns;
+    if (columnIndex < columns.length && columns[columnIndex] != null) {
+      return columns[columnIndex];
+    }
+    columns = Arrays.copyOf(columns, Math.max(columns.length, columnIndex + 1));
+    Column column = new Column(new String[mask + 1]);
+    columns[columnIndex] = column;
+    this.columns = columns;
+    return column;
+  }
+
+  private static boolean equals(String value, char[] buffer, int offset, int length) {
+    if (value.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) != buffer[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static double hitRate(long hits, long misses) {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * The slots and the statistics of a column.
+   */
+  private static final class Column {
+
+    /**
+     * The slots, or null if the column is not cached.
+     */
+    String[] table;
+    long hits;
+    long misses;
+    int sampleLookups;
+    int sampleMisses;
+
+    /**
+     * Whether the first sample since the table was created has been seen.
+     */
+    boolean warm;
+
+    /**
+     * The number of lookups since the column stopped being cached.
+     */
+    int disabledLookups;
+
+    Column(String[] table) {
+      this.table = table;
+    }
+
+    String[] enable(int capacity) {
+      table = new String[capacity];
+      warm = false;
+      sampleLookups = sampleMisses = 0;
+      return table;
+    }
+  }
+}
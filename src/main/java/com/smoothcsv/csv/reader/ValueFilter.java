@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+/**
+ * A condition on a value, which is tested on the characters of the value before the row is
+ * created.
+ *
+ * @author kohii
+ * @see AbstractCsvReader#addFilter(int, ValueFilter)
+ */
+@FunctionalInterface
+public interface ValueFilter {
+
+  /**
+   * Tests a value. The characters are valid only during this call and must not be modified.
+   *
+   * @param buffer the buffer that holds the characters of the value
+   * @param offset the offset of the value in the buffer
+   * @param length the length of the value
+   * @return true if the row should be read
+   */
+  boolean accept(char[] buffer, int offset, int length);
+
+  /**
+   * @return A filter that accepts a value if this filter does not accept it
+   */
+  default ValueFilter negate() {
+    return (buffer, offset, length) -> !accept(buffer, offset, length);
+  }
+
+  /**
+   * @param other another filter
+   * @return A filter that accepts a value if both this filter and the other filter accept it
+   */
+  default ValueFilter and(ValueFilter other) {
+    return (buffer, offset, length) ->
+        accept(buffer, offset, length) && other.accept(buffer, offset, length);
+  }
+
+  /**
+   * @param value a String
+   * @return A filter that accepts values equal to the specified String
+   */
+  static ValueFilter equalTo(String value) {
+    char[] chars = value.toCharArray();
+    return (buffer, offset, length) -> {
+      if (length != chars.length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (buffer[offset + i] != chars[i]) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+}
@@ -13,15 +13,18 @@
  */
 package com.smoothcsv.csv.writer;
 
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
 import java.util.List;
 
 import com.smoothcsv.csv.prop.CsvProperties;
+import com.smoothcsv.csv.prop.LineSeparator;
 import com.smoothcsv.csv.prop.QuoteApplyRule;
 import com.smoothcsv.csv.prop.QuoteEscapeRule;
 import com.smoothcsv.csv.prop.QuoteEscapeStrategy;
@@ -34,6 +37,11 @@ import com.smoothcsv.csv.prop.QuoteEscapeStrategy;
  */
 public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
 
+  /**
+   * Default output-buffer size.
+   */
+  private static final int DEFAULT_CHAR_BUFFER_SIZE = 8192;
+
   /**
    * Null character.
    */
@@ -65,10 +73,51 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
    */
   private Writer out;
 
+  /**
+   * The output-buffer, whose characters up to {@link #count} have not been written to
+   * {@link #out}. The buffer is not synchronized unlike {@link java.io.BufferedWriter}.
+   */
+  private char[] cb;
+  private int count;
+
+  /**
+   * If true, the output-buffer is written at the end of every row, so that the target has all
+   * rows written.
+   */
+  private final boolean flushesEachRow;
+
   /**
    * Index of the current.
    */
-  private int rowIndex = 0;
+  private long rowIndex = 0;
+
+  /**
+   * The value last scanned by {@link #appliesQuoting(String, long, int)}, and the number of
+   * characters at the beginning of it that need no quoting. Those characters have no quote, so
+   * {@link #writeValue(String, int)} writes them without scanning them again.
+   */
+  private String scannedValue;
+  private int scannedLength;
+
+  /**
+   * Index of the column written next by {@link #writeString(String)} and the other methods that
+   * write a value, which is 0 until a value is written after {@link #endRow()}.
+   */
+  private int columnIndex;
+
+  /**
+   * If true, the separator, the quote and the escape characters cannot appear in a formatted
+   * integer or date, or in a formatted double, and {@link #appliesQuoting(String, long, int)} is
+   * not overridden. The formatted value then needs no escaping, and is quoted only by
+   * {@link QuoteApplyRule#QUOTES_ALL} without being scanned.
+   */
+  private final boolean plainIntegers;
+  private final boolean plainDecimals;
+
+  /**
+   * The buffer to format a number or a date.
+   */
+  private final char[] formatBuffer = new char[CharFormatter.MAX_LENGTH];
 
   /**
    * Constructs AbstractCsvWriter using {@link CsvProperties#DEFAULT} and
@@ -98,8 +147,10 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
    * @param options    Options how to write the CSV
    */
   public AbstractCsvWriter(Writer out, CsvProperties properties, CsvWriteOption options) {
-    this.out = (out instanceof BufferedWriter) || (out instanceof StringWriter) ? out
-        : new BufferedWriter(out);
+    this.out = out;
+    this.cb = new char[charBufferSize()];
+    // a StringWriter has been written without buffering
+    this.flushesEachRow = out instanceof StringWriter;
 
     this.separator = properties.getDelimiter();
     this.quote = properties.getQuoteChar();
@@ -113,6 +164,46 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
     } else {
       this.quoteRule = options.getQuoteOption();
     }
+    // an overridden appliesQuoting decides the quoting of every value
+    boolean defaultQuoting = !overridesAppliesQuoting(getClass());
+    this.plainIntegers = defaultQuoting && !containsSpecialCharacter(CharFormatter.INTEGER_CHARS);
+    this.plainDecimals = defaultQuoting && !containsSpecialCharacter(CharFormatter.DECIMAL_CHARS);
+  }
+
+  /**
+   * Constructs AbstractCsvWriter that encodes the CSV in UTF-8 directly to the stream, without
+   * {@link java.io.OutputStreamWriter}. The stream is closed when the writer is closed. Pass
+   * {@link ParallelGzipOutputStream} to write a gzipped CSV compressed on multiple threads.
+   *
+   * @param out        An OutputStream
+   * @param properties CSV Properties
+   * @param options    Options how to write the CSV
+   */
+  public AbstractCsvWriter(OutputStream out, CsvProperties properties, CsvWriteOption options) {
+    this(new Utf8Writer(out), properties, options);
+  }
+
+  /**
+   * Constructs AbstractCsvWriter that encodes the CSV in UTF-8 directly to the channel. The
+   * channel is closed when the writer is closed.
+   *
+   * @param channel    A WritableByteChannel
+   * @param properties CSV Properties
+   * @param options    Options how to write the CSV
+   */
+  public AbstractCsvWriter(WritableByteChannel channel, CsvProperties properties,
+                           CsvWriteOption options) {
+    this(new Utf8Writer(channel), properties, options);
+  }
+
+  /**
+   * Sets the index of the row written next, for a writer that writes a part of the rows.
+   *
+   * @param rowIndex The row index
+   */
+  void setRowIndex(long rowIndex) {
+    ensureNoRowStarted();
+    this.rowIndex = rowIndex;
   }
 
   /**
@@ -122,29 +213,103 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
    * @throws IOException
    */
   public void writeRow(R row) throws IOException {
+    ensureNoRowStarted();
     int columnSize = extractColumnSize(row, rowIndex);
     if (columnSize < 0) {
       return;
     }
     for (int i = 0; i < columnSize; i++) {
-      if (i != 0) {
-        out.write(separator);
-      }
-      String value = extractValue(row, rowIndex, i);
-      boolean doQuote = appliesQuoting(value, rowIndex, columnSize);
-      if (doQuote) {
-        out.write(quote);
-        writeValue(value);
-        out.write(quote);
-      } else {
-        out.write(value);
-      }
+      writeField(extractValue(row, rowIndex, i), i);
     }
     Object ls = extractLineSeparator(row, rowIndex);
     if (ls != null) {
-      out.write(ls.toString());
+      String s = ls.toString();
+      write(s, 0, s.length());
     }
-    rowIndex++;
+    finishRow();
+  }
+
+  /**
+   * Writes a value to the current row. The value is quoted as a value of
+   * {@link #writeRow(Object)}.
+   *
+   * @param value The value, or null to write an empty value
+   * @throws IOException If an I/O error occurs
+   */
+  public void writeString(String value) throws IOException {
+    writeField(value == null ? "" : value, columnIndex++);
+  }
+
+  /**
+   * Writes an int to the current row, in the same format as {@link Integer#toString(int)}.
+   *
+   * @param value The value
+   * @throws IOException If an I/O error occurs
+   */
+  public void writeInt(int value) throws IOException {
+    writeLong(value);
+  }
+
+  /**
+   * Writes a long to the current row, in the same format as {@link Long#toString(long)}.
+   *
+   * @param value The value
+   * @throws IOException If an I/O error occurs
+   */
+  public void writeLong(long value) throws IOException {
+    writeFormatted(CharFormatter.formatLong(value, formatBuffer, 0), plainIntegers);
+  }
+
+  /**
+   * Writes a double to the current row, in the same format as {@link Double#toString(double)}.
+   *
+   * @param value The value
+   * @throws IOException If an I/O error occurs
+   */
+  public void writeDouble(double value) throws IOException {
+    int length = CharFormatter.formatDouble(value, formatBuffer, 0);
+    if (length < 0) {
+      // in scientific notation, or with more fractional digits
+      String s = Double.toString(value);
+      length = s.length();
+      s.getChars(0, length, formatBuffer, 0);
+    }
+    writeFormatted(length, plainDecimals);
+  }
+
+  /**
+   * Writes a date to the current row, in the same format as {@link LocalDate#toString()}.
+   *
+   * @param date The date, or null to write an empty value
+   * @throws IOException If an I/O error occurs
+   */
+  public void writeDate(LocalDate date) throws IOException {
+    if (date == null) {
+      writeString(null);
+    } else {
+      writeFormatted(CharFormatter.formatDate(date, formatBuffer, 0), plainIntegers);
+    }
+  }
+
+  /**
+   * Ends the current row with {@link LineSeparator#DEFAULT}.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  public void endRow() throws IOException {
+    endRow(LineSeparator.DEFAULT);
+  }
+
+  /**
+   * Ends the current row.
+   *
+   * @param lineSeparator The line separator
+   * @throws IOException If an I/O error occurs
+   */
+  public void endRow(LineSeparator lineSeparator) throws IOException {
+    String s = lineSeparator.stringValue();
+    write(s, 0, s.length());
+    finishRow();
   }
 
   /**
@@ -167,7 +332,7 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
    * @param columnIndex Index of the current column.
    * @return if true, the value should be quoted.
    */
-  protected boolean appliesQuoting(String value, int rowIndex, int columnIndex) {
+  protected boolean appliesQuoting(String value, long rowIndex, int columnIndex) {
     switch (quoteRule) {
       case QUOTES_ALL:
         return true;
@@ -175,6 +340,8 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
         for (int i = 0, len = value.length(); i < len; i++) {
           char c = value.charAt(i);
           if (c == separator || c == quote || c == escape || c == '\n' || c == '\r') {
+            scannedValue = value;
+            scannedLength = i;
             return true;
           }
         }
@@ -192,7 +359,7 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
    * @param rowIndex Index of the current row.
    * @return line separator
    */
-  protected abstract Object extractLineSeparator(R row, int rowIndex);
+  protected abstract Object extractLineSeparator(R row, long rowIndex);
 
   /**
    * Extracts the cell value in the row specified by the column index.
@@ -202,7 +369,7 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
    * @param columnIndex Column index in the row.
    * @return cell value
    */
-  protected abstract String extractValue(R row, int rowIndex, int columnIndex);
+  protected abstract String extractValue(R row, long rowIndex, int columnIndex);
 
   /**
    * Extracts the column size of the row.
@@ -211,26 +378,158 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
    * @param rowIndex Index of the current row.
    * @return column size
    */
-  protected abstract int extractColumnSize(R row, int rowIndex);
+  protected abstract int extractColumnSize(R row, long rowIndex);
 
   /**
-   * Writes the value of single cell.
+   * Writes a value, quoting it if {@link #appliesQuoting(String, long, int)} returns true.
+   *
+   * @param value       The value
+   * @param columnIndex Index of the column
+   * @throws IOException
+   */
+  private void writeField(String value, int columnIndex) throws IOException {
+    if (columnIndex != 0) {
+      write(separator);
+    }
+    if (appliesQuoting(value, rowIndex, columnIndex)) {
+      write(quote);
+      writeValue(value, value == scannedValue ? scannedLength : 0);
+      write(quote);
+    } else {
+      write(value, 0, value.length());
+    }
+    scannedValue = null;
+  }
+
+  /**
+   * Writes the characters in {@link #formatBuffer} as a value. If they are not plain, they are
+   * written as a {@link String} by {@link #writeString(String)}.
+   *
+   * @param length The number of the characters
+   * @param plain  true if the characters cannot need escaping
+   * @throws IOException
+   */
+  private void writeFormatted(int length, boolean plain) throws IOException {
+    if (!plain) {
+      writeString(new String(formatBuffer, 0, length));
+      return;
+    }
+    boolean quoted = quoteRule == QuoteApplyRule.QUOTES_ALL;
+    if (columnIndex++ != 0) {
+      write(separator);
+    }
+    if (quoted) {
+      write(quote);
+    }
+    write(formatBuffer, 0, length);
+    if (quoted) {
+      write(quote);
+    }
+  }
+
+  /**
+   * @param type The class of the writer
+   * @return true if the class or a superclass below AbstractCsvWriter declares
+   * {@link #appliesQuoting(String, long, int)}
+   */
+  private static boolean overridesAppliesQuoting(Class<?> type) {
+    for (Class<?> c = type; c != AbstractCsvWriter.class; c = c.getSuperclass()) {
+      try {
+        c.getDeclaredMethod("appliesQuoting", String.class, long.class, int.class);
+        return true;
+      } catch (NoSuchMethodException e) {
+        // look in the superclass
+      }
+    }
+    return false;
+  }
+
+  private void finishRow() throws IOException {
+    if (flushesEachRow) {
+      flushBuffer();
+    }
+    columnIndex = 0;
+    rowIndex++;
+  }
+
+  private void ensureNoRowStarted() {
+    if (columnIndex != 0) {
+      throw new IllegalStateException("The row being written has not been ended");
+    }
+  }
+
+  private boolean containsSpecialCharacter(String chars) {
+    return chars.indexOf(separator) >= 0 || chars.indexOf(quote) >= 0
+        || chars.indexOf(escape) >= 0;
+  }
+
+  /**
+   * Writes the value of single cell, escaping quotes. The characters between quotes are written
+   * at once, so a value without quotes is written by one call.
    *
    * @param value value of the cell.
+   * @param from  the position to start searching quotes, before which the value has no quote.
    * @throws IOException
    */
-  private void writeValue(String value) throws IOException {
-    int len = value.length();
-    for (int i = 0; i < len; i++) {
-      char c = value.charAt(i);
-      if (c == quote) {
-        if (escape == NULL_CHARACTER) {
-          out.write(quote);
-        } else {
-          out.write(escape);
-        }
+  private void writeValue(String value, int from) throws IOException {
+    int start = 0;
+    int q;
+    while ((q = value.indexOf(quote, from)) >= 0) {
+      write(value, start, q - start);
+      write(escape == NULL_CHARACTER ? quote : escape);
+      // the quote is written with the following characters
+      start = q;
+      from = q + 1;
+    }
+    write(value, start, value.length() - start);
+  }
+
+  /**
+   * @return Output-buffer size
+   */
+  protected int charBufferSize() {
+    return DEFAULT_CHAR_BUFFER_SIZE;
+  }
+
+  private void write(char c) throws IOException {
+    if (count == cb.length) {
+      flushBuffer();
+    }
+    cb[count++] = c;
+  }
+
+  private void write(char[] chars, int off, int len) throws IOException {
+    if (len > cb.length - count) {
+      flushBuffer();
+      if (len > cb.length) {
+        out.write(chars, off, len);
+        return;
       }
-      out.write(c);
+    }
+    System.arraycopy(chars, off, cb, count, len);
+    count += len;
+  }
+
+  private void write(String s, int off, int len) throws IOException {
+    while (len > 0) {
+      if (count == cb.length) {
+        flushBuffer();
+      }
+      int n = Math.min(len, cb.length - count);
+      s.getChars(off, off + n, cb, count);
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes the characters in the output-buffer to {@link #out}.
+   */
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      out.write(cb, 0, count);
+      count = 0;
     }
   }
 
@@ -239,15 +538,21 @@ public abstract class AbstractCsvWriter<R> implements Closeable, Flushable {
     if (out == null) {
       return;
     }
-    try (Writer w = out) {
+    try {
       flush();
     } finally {
-      out = null;
+      try {
+        out.close();
+      } finally {
+        out = null;
+        cb = null;
+      }
     }
   }
 
   @Override
   public void flush() throws IOException {
+    flushBuffer();
     out.flush();
   }
 }
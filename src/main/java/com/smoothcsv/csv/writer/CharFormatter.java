@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.writer;
+
+import java.time.LocalDate;
+
+/**
+ * Formats numbers and dates into an array of characters without creating a {@link String}.
+ *
+ * @author kohii
+ */
+final class CharFormatter {
+
+  /**
+   * Maximum number of characters written by the methods of this class or
+   * {@link Double#toString(double)}.
+   */
+  static final int MAX_LENGTH = 24;
+
+  /**
+   * The characters that can appear in a long or a date formatted by this class.
+   */
+  static final String INTEGER_CHARS = "0123456789+-";
+
+  /**
+   * The characters that can appear in a double formatted by this class or
+   * {@link Double#toString(double)}.
+   */
+  static final String DECIMAL_CHARS = INTEGER_CHARS + ".EINafinty";
+
+  /**
+   * Powers of ten that are exactly representable as double and long.
+   */
+  private static final long[] POWERS_OF_TEN = {
+      1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L
+  };
+
+  /**
+   * Range of the absolute values written in plain notation by {@link Double#toString(double)}.
+   */
+  private static final double MIN_PLAIN_DOUBLE = 1e-3;
+  private static final double MAX_PLAIN_DOUBLE = 1e7;
+
+  private CharFormatter() {
+  }
+
+  /**
+   * Formats a long in the same format as {@link Long#toString(long)}.
+   *
+   * @param value  the value
+   * @param buffer the buffer to write the characters
+   * @param offset the position in the buffer to write the first character
+   * @return the number of the characters
+   */
+  static int formatLong(long value, char[] buffer, int offset) {
+    int length = value < 0 ? 2 : 1;
+    // count digits negatively to reach Long.MIN_VALUE
+    long q = value < 0 ? value : -value;
+    for (long n = q / 10; n != 0; n /= 10) {
+      length++;
+    }
+    int pos = offset + length;
+    do {
+      long next = q / 10;
+      buffer[--pos] = (char) ('0' + (next * 10 - q));
+      q = next;
+    } while (q != 0);
+    if (value < 0) {
+      buffer[--pos] = '-';
+    }
+    return length;
+  }
+
+  /**
+   * Formats a double in the same format as {@link Double#toString(double)}, if the absolute value
+   * is 0 or from 10<sup>-3</sup> to 10<sup>7</sup> and it has 8 fractional digits at most. The
+   * characters are the shortest decimal that is parsed to the same double.
+   *
+   * @param value  the value
+   * @param buffer the buffer to write the characters
+   * @param offset the position in the buffer to write the first character
+   * @return the number of the characters, or -1 if the value has not been formatted
+   */
+  static int formatDouble(double value, char[] buffer, int offset) {
+    int pos = offset;
+    if (value == 0) {
+      if (Double.doubleToRawLongBits(value) != 0) {
+        buffer[pos++] = '-';
+      }
+      buffer[pos++] = '0';
+      buffer[pos++] = '.';
+      buffer[pos++] = '0';
+      return pos - offset;
+    }
+    double abs = Math.abs(value);
+    if (!(abs >= MIN_PLAIN_DOUBLE && abs < MAX_PLAIN_DOUBLE)) {
+      return -1;
+    }
+    for (int scale = 0; scale < POWERS_OF_TEN.length; scale++) {
+      // the decimal is parsed to the value if the exact quotient is rounded to the value
+      double scaled = Math.rint(abs * POWERS_OF_TEN[scale]);
+      if (scaled / POWERS_OF_TEN[scale] != abs) {
+        continue;
+      }
+      long digits = (long) scaled;
+      if (value < 0) {
+        buffer[pos++] = '-';
+      }
+      pos += formatLong(digits / POWERS_OF_TEN[scale], buffer, pos);
+      buffer[pos++] = '.';
+      if (scale == 0) {
+        buffer[pos++] = '0';
+      } else {
+        long fraction = digits % POWERS_OF_TEN[scale];
+        for (int i = scale - 1; i >= 0; i--) {
+          buffer[pos++] = (char) ('0' + fraction / POWERS_OF_TEN[i] % 10);
+        }
+      }
+      return pos - offset;
+    }
+    return -1;
+  }
+
+  /**
+   * Formats a date in the same format as {@link LocalDate#toString()}.
+   *
+   * @param date   the date
+   * @param buffer the buffer to write the characters
+   * @param offset the position in the buffer to write the first character
+   * @return the number of the characters
+   */
+  static int formatDate(LocalDate date, char[] buffer, int offset) {
+    int pos = offset;
+    int year = date.getYear();
+    if (year < 0) {
+      buffer[pos++] = '-';
+    } else if (year > 9999) {
+      buffer[pos++] = '+';
+    }
+    int absYear = Math.abs(year);
+    if (absYear < 1000) {
+      pos = formatTwoDigits(absYear / 100, buffer, pos);
+      pos = formatTwoDigits(absYear % 100, buffer, pos);
+    } else {
+      pos += formatLong(absYear, buffer, pos);
+    }
+    buffer[pos++] = '-';
+    pos = formatTwoDigits(date.getMonthValue(), buffer, pos);
+    buffer[pos++] = '-';
+    pos = formatTwoDigits(date.getDayOfMonth(), buffer, pos);
+    return pos - offset;
+  }
+
+  private static int formatTwoDigits(int value, char[] buffer, int pos) {
+    buffer[pos++] = (char) ('0' + value / 10);
+    buffer[pos++] = (char) ('0' + value % 10);
+    return pos;
+  }
+}
@@ -13,7 +13,9 @@
  */
 package com.smoothcsv.csv.writer;
 
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 import com.smoothcsv.csv.prop.CsvProperties;
@@ -57,19 +59,42 @@ public class DefaultCsvWriter extends AbstractCsvWriter<List<Object>> {
     super(out, properties, options);
   }
 
+  /**
+   * Constructs DefaultCsvWriter that encodes the CSV in UTF-8 directly to the stream.
+   *
+   * @param out        An OutputStream
+   * @param properties CSV Properties
+   * @param options    Options how to write the CSV
+   */
+  public DefaultCsvWriter(OutputStream out, CsvProperties properties, CsvWriteOption options) {
+    super(out, properties, options);
+  }
+
+  /**
+   * Constructs DefaultCsvWriter that encodes the CSV in UTF-8 directly to the channel.
+   *
+   * @param channel    A WritableByteChannel
+   * @param properties CSV Properties
+   * @param options    Options how to write the CSV
+   */
+  public DefaultCsvWriter(WritableByteChannel channel, CsvProperties properties,
+                          CsvWriteOption options) {
+    super(channel, properties, options);
+  }
+
   @Override
-  protected Object extractLineSeparator(List<Object> row, int rowIndex) {
+  protected Object extractLineSeparator(List<Object> row, long rowIndex) {
     return LineSeparator.DEFAULT.stringValue();
   }
 
   @Override
-  protected String extractValue(List<Object> row, int rowIndex, int columnIndex) {
+  protected String extractValue(List<Object> row, long rowIndex, int columnIndex) {
     Object val = row.get(columnIndex);
     return val == null ? "" : val.toString();
   }
 
   @Override
-  protected int extractColumnSize(List<Object> row, int rowIndex) {
+  protected int extractColumnSize(List<Object> row, long rowIndex) {
     return row.size();
   }
 
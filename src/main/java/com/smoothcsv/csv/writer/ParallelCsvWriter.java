@@ -0,0 +1,342 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Writes rows to a channel, formatting them on multiple threads.
+ * <p>
+ * The rows are collected into batches, and each batch is formatted into a chunk of bytes in UTF-8
+ * on a {@link ForkJoinPool} by a writer created by the writer factory, while the following rows
+ * are collected. The chunks are written to the channel in the order of the rows, by gathering
+ * writes if the channel is a {@link GatheringByteChannel} such as a
+ * {@link java.nio.channels.FileChannel}. At most {@code maxInFlight} chunks are formatted or held
+ * at once; {@link #writeRow(Object)} waits for the oldest chunk and writes it when the limit is
+ * reached.
+ * </p>
+ * <p>
+ * Every writer receives the same row indices as a single writer writing all rows, so the output is
+ * the same as the output of the writer created by the factory with a stream of the channel. The
+ * hooks of the writers are called concurrently, and must not depend on each other. A row must not
+ * be modified after it is passed to {@link #writeRow(Object)}, because it is formatted later. This
+ * class is not thread-safe.
+ * </p>
+ * <p>
+ * {@link AbstractCsvWriter#extractColumnSize(Object, long)} is called twice for each row: once on
+ * the calling thread to tell whether the row is written, and once again by the writer that formats
+ * the row. It must be a pure function of the row and the row index, and must return the same value
+ * both times; otherwise the row indices of the batches do not match the rows that are written.
+ * </p>
+ *
+ * @param <R> The class that holds values of one row.
+ * @author kohii
+ */
+public class ParallelCsvWriter<R> implements Closeable, Flushable {
+
+  /**
+   * Default number of rows in a batch.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 4096;
+
+  /**
+   * Initial size of the buffer of a chunk, before the size of a chunk is known.
+   */
+  private static final int INITIAL_CHUNK_SIZE = 8192;
+
+  private final WritableByteChannel channel;
+
+  private final Function<OutputStream, ? extends AbstractCsvWriter<R>> writerFactory;
+
+  private final ForkJoinPool pool;
+
+  private final int batchSize;
+
+  private final int maxInFlight;
+
+  /**
+   * The writer that tells on the calling thread whether a row is written, so that the row indices
+   * of the batches are known before formatting. This writer writes nothing.
+   */
+  private final AbstractCsvWriter<R> probe;
+
+  /**
+   * The tasks formatting the chunks, in the order of the rows.
+   */
+  private final Deque<ForkJoinTask<ByteBuffer>> inFlight = new ArrayDeque<>();
+
+  private final ByteBuffer[] gathered;
+
+  private List<R> batch;
+  private long batchStart;
+  private long rowIndex;
+
+  /**
+   * The size of the last chunk, used as the initial size of the buffer of a chunk.
+   */
+  private volatile int chunkSizeHint = INITIAL_CHUNK_SIZE;
+
+  /**
+   * Whether a chunk has not been formatted. The following rows are not written.
+   */
+  private boolean failed;
+
+  private boolean closed;
+
+  /**
+   * Set when the writer is closed, to stop the tasks that are formatting the chunks.
+   */
+  private volatile boolean aborted;
+
+  /**
+   * Constructs ParallelCsvWriter that runs on {@link ForkJoinPool#commonPool()}.
+   *
+   * @param channel       The channel to write the CSV
+   * @param writerFactory A function that creates a writer with the specified stream
+   */
+  public ParallelCsvWriter(WritableByteChannel channel,
+                           Function<OutputStream, ? extends AbstractCsvWriter<R>> writerFactory) {
+    this(channel, writerFactory, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE,
+        ForkJoinPool.commonPool().getParallelism() * 2);
+  }
+
+  /**
+   * Constructs ParallelCsvWriter.
+   *
+   * @param channel       The channel to write the CSV
+   * @param writerFactory A function that creates a writer with the specified stream
+   * @param pool          The pool to run the formatting tasks
+   * @param batchSize     The number of rows formatted by a task
+   * @param maxInFlight   The maximum number of chunks formatted or held at once
+   */
+  public ParallelCsvWriter(WritableByteChannel channel,
+                           Function<OutputStream, ? extends AbstractCsvWriter<R>> writerFactory,
+                           ForkJoinPool pool, int batchSize, int maxInFlight) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize must be positive");
+    }
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+    this.channel = Objects.requireNonNull(channel);
+    this.writerFactory = Objects.requireNonNull(writerFactory);
+    this.pool = Objects.requireNonNull(pool);
+    this.batchSize = batchSize;
+    this.maxInFlight = maxInFlight;
+    this.probe = writerFactory.apply(new ChunkOutputStream(0));
+    this.gathered = new ByteBuffer[maxInFlight];
+    this.batch = new ArrayList<>(batchSize);
+  }
+
+  /**
+   * Writes a row. The row is formatted later on the pool.
+   *
+   * @param row Row object
+   * @throws IOException If an I/O error occurs while writing the rows before
+   */
+  public void writeRow(R row) throws IOException {
+    ensureOpen();
+    if (probe.extractColumnSize(row, rowIndex) < 0) {
+      // the writer skips the row without counting it
+      return;
+    }
+    batch.add(row);
+    rowIndex++;
+    if (batch.size() == batchSize) {
+      submitBatch();
+    }
+  }
+
+  /**
+   * Writes all rows.
+   *
+   * @param rows rows
+   * @throws IOException If an I/O error occurs
+   */
+  public void writeAll(List<R> rows) throws IOException {
+    for (R row : rows) {
+      writeRow(row);
+    }
+  }
+
+  /**
+   * Formats the rows passed so far, and writes them to the channel.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    submitBatch();
+    while (!inFlight.isEmpty()) {
+      writeChunks();
+    }
+  }
+
+  /**
+   * Writes the rows passed so far, and closes the channel. If a chunk has not been formatted, only
+   * the rows before the chunk have been written.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      if (!failed) {
+        flush();
+      }
+    } finally {
+      closed = true;
+      // cancel does not stop a running task, so the tasks stop by themselves and are waited for,
+      // and no task calls the writer factory after the channel is closed
+      aborted = true;
+      for (ForkJoinTask<?> task : inFlight) {
+        task.quietlyJoin();
+      }
+      inFlight.clear();
+      try {
+        probe.close();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  private void submitBatch() throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<R> rows = batch;
+    long start = batchStart;
+    batch = new ArrayList<>(batchSize);
+    batchStart = rowIndex;
+    while (inFlight.size() >= maxInFlight) {
+      writeChunks();
+    }
+    inFlight.add(pool.submit(() -> format(rows, start)));
+  }
+
+  /**
+   * Formats rows into a chunk.
+   *
+   * @param rows  The rows
+   * @param start The index of the first row
+   * @return The chunk, or null if the writer has been closed
+   */
+  private ByteBuffer format(List<R> rows, long start) {
+    if (aborted) {
+      return null;
+    }
+    ChunkOutputStream out = new ChunkOutputStream(chunkSizeHint);
+    try (AbstractCsvWriter<R> writer = writerFactory.apply(out)) {
+      writer.setRowIndex(start);
+      for (R row : rows) {
+        if (aborted) {
+          return null;
+        }
+        writer.writeRow(row);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    chunkSizeHint = out.size();
+    return out.toByteBuffer();
+  }
+
+  /**
+   * Waits for the oldest chunk, and writes it with the following chunks that have been formatted.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  private void writeChunks() throws IOException {
+    int n = 0;
+    try {
+      do {
+        gathered[n++] = join(inFlight.poll());
+      } while (!inFlight.isEmpty() && inFlight.peek().isDone()
+          && !inFlight.peek().isCompletedAbnormally());
+    } catch (IOException | RuntimeException e) {
+      failed = true;
+      throw e;
+    }
+    try {
+      if (channel instanceof GatheringByteChannel) {
+        GatheringByteChannel gc = (GatheringByteChannel) channel;
+        while (gathered[n - 1].hasRemaining()) {
+          gc.write(gathered, 0, n);
+        }
+      } else {
+        for (int i = 0; i < n; i++) {
+          while (gathered[i].hasRemaining()) {
+            channel.write(gathered[i]);
+          }
+        }
+      }
+    } finally {
+      for (int i = 0; i < n; i++) {
+        gathered[i] = null;
+      }
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (failed) {
+      throw new IOException("A row has not been written");
+    }
+  }
+
+  private static <T> T join(ForkJoinTask<T> task) throws IOException {
+    try {
+      return task.join();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * A stream that holds a chunk, whose bytes are wrapped without copying.
+   */
+  private static final class ChunkOutputStream extends ByteArrayOutputStream {
+
+    ChunkOutputStream(int size) {
+      super(size);
+    }
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+}
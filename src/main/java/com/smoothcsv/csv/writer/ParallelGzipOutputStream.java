@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Stream that compresses the data in the gzip format, deflating blocks of the data on multiple
+ * threads.
+ * <p>
+ * The data is divided into blocks, and each block is deflated on a {@link ForkJoinPool} by its own
+ * {@link Deflater}, with the last 32 KiB of the previous block as the dictionary. Every block but
+ * the last ends with a sync flush, so that the deflated blocks are concatenated into one deflate
+ * stream in a single gzip member, which can be read by {@link java.util.zip.GZIPInputStream} and
+ * other gzip decoders. At most twice as many blocks as the parallelism of the pool are deflated or
+ * held at once; {@link #write(byte[], int, int)} waits for the oldest block and writes it when the
+ * limit is reached. The output is slightly larger than the output of
+ * {@link java.util.zip.GZIPOutputStream} with the same level.
+ * </p>
+ * <p>
+ * Pass this stream to {@link AbstractCsvWriter#AbstractCsvWriter(OutputStream,
+ * com.smoothcsv.csv.prop.CsvProperties, CsvWriteOption)} to write a gzipped CSV. This class is not
+ * thread-safe.
+ * </p>
+ *
+ * @author kohii
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+  /**
+   * Default number of bytes in a block.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+  /**
+   * Size of the window of deflate, which is the maximum size of the dictionary.
+   */
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  private static final byte[] HEADER = {
+      0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+  };
+
+  private final OutputStream out;
+
+  private final ForkJoinPool pool;
+
+  private final int blockSize;
+
+  private final int level;
+
+  private final int maxInFlight;
+
+  /**
+   * The tasks deflating the blocks, in the order of the blocks.
+   */
+  private final Deque<ForkJoinTask<ByteBuffer>> inFlight = new ArrayDeque<>();
+
+  private final CRC32 crc = new CRC32();
+
+  private long size;
+
+  /**
+   * The block that is being filled. A block is not modified after it is submitted.
+   */
+  private byte[] block;
+  private int count;
+
+  /**
+   * The last submitted block, whose end is the dictionary of the next block.
+   */
+  private byte[] previousBlock;
+  private int previousCount;
+
+  private boolean closed;
+
+  /**
+   * Set when the stream is closed, to stop the tasks that are deflating the blocks.
+   */
+  private volatile boolean aborted;
+
+  /**
+   * Constructs ParallelGzipOutputStream that runs on {@link ForkJoinPool#commonPool()}.
+   *
+   * @param out The stream to write the compressed data
+   * @throws IOException If an I/O error occurs while writing the header
+   */
+  public ParallelGzipOutputStream(OutputStream out) throws IOException {
+    this(out, ForkJoinPool.commonPool(), DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Constructs ParallelGzipOutputStream.
+   *
+   * @param out       The stream to write the compressed data
+   * @param pool      The pool to run the deflating tasks
+   * @param blockSize The number of bytes deflated by a task
+   * @param level     The compression level from 0 to 9, or
+   *                  {@link Deflater#DEFAULT_COMPRESSION}
+   * @throws IOException If an I/O error occurs while writing the header
+   */
+  public ParallelGzipOutputStream(OutputStream out, ForkJoinPool pool, int blockSize, int level)
+      throws IOException {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize must be positive");
+    }
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("invalid level: " + level);
+    }
+    this.out = Objects.requireNonNull(out);
+    this.pool = Objects.requireNonNull(pool);
+    this.blockSize = blockSize;
+    this.level = level;
+    this.maxInFlight = pool.getParallelism() * 2;
+    this.block = new byte[blockSize];
+    out.write(HEADER);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException("off: " + off + ", len: " + len);
+    }
+    crc.update(b, off, len);
+    size += len;
+    while (len > 0) {
+      int n = Math.min(len, blockSize - count);
+      System.arraycopy(b, off, block, count, n);
+      count += n;
+      off += n;
+      len -= n;
+      if (count == blockSize) {
+        submitBlock(false);
+      }
+    }
+  }
+
+  /**
+   * Deflates the data written so far, and writes it to the stream. The data written so far can be
+   * decompressed from the output, but frequent flushing degrades the compression.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (count > 0) {
+      submitBlock(false);
+    }
+    while (!inFlight.isEmpty()) {
+      writeBlock();
+    }
+    out.flush();
+  }
+
+  /**
+   * Deflates the data written so far, writes the trailer, and closes the stream.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      submitBlock(true);
+      while (!inFlight.isEmpty()) {
+        writeBlock();
+      }
+      byte[] trailer = new byte[8];
+      putInt(trailer, 0, (int) crc.getValue());
+      putInt(trailer, 4, (int) size);
+      out.write(trailer);
+    } finally {
+      closed = true;
+      // cancel does not stop a running task, so the tasks stop by themselves and are waited for
+      aborted = true;
+      for (ForkJoinTask<?> task : inFlight) {
+        task.quietlyJoin();
+      }
+      inFlight.clear();
+      out.close();
+    }
+  }
+
+  private void submitBlock(boolean last) throws IOException {
+    byte[] input = block;
+    int length = count;
+    byte[] dictionary = previousBlock;
+    int dictionaryEnd = previousCount;
+    previousBlock = input;
+    previousCount = length;
+    block = last ? null : new byte[blockSize];
+    count = 0;
+    while (inFlight.size() >= maxInFlight) {
+      writeBlock();
+    }
+    inFlight.add(pool.submit(() -> deflate(input, length, dictionary, dictionaryEnd, last)));
+  }
+
+  /**
+   * Deflates a block in the raw deflate format.
+   *
+   * @param input         The block
+   * @param length        The number of bytes in the block
+   * @param dictionary    The previous block, or null
+   * @param dictionaryEnd The number of bytes in the previous block
+   * @param last          Whether the block is the last one
+   * @return The deflated block, or null if the stream has been closed
+   */
+  private ByteBuffer deflate(byte[] input, int length, byte[] dictionary, int dictionaryEnd,
+                             boolean last) {
+    if (aborted) {
+      return null;
+    }
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (dictionary != null) {
+        int dictionaryLength = Math.min(dictionaryEnd, DICTIONARY_SIZE);
+        deflater.setDictionary(dictionary, dictionaryEnd - dictionaryLength, dictionaryLength);
+      }
+      deflater.setInput(input, 0, length);
+      if (last) {
+        deflater.finish();
+      }
+      byte[] output = new byte[length / 2 + 64];
+      int n = 0;
+      while (!aborted) {
+        if (n == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+        n += deflater.deflate(output, n, output.length - n,
+            last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+        // the deflater has flushed everything if it has not filled the output
+        if (last ? deflater.finished() : n < output.length) {
+          break;
+        }
+      }
+      return ByteBuffer.wrap(output, 0, n);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Waits for the oldest block, and writes it.
+   *
+   * @throws IOException If an I/O error occurs
+   */
+  private void writeBlock() throws IOException {
+    ByteBuffer deflated = inFlight.poll().join();
+    out.write(deflated.array(), 0, deflated.limit());
+  }
+
+  private static void putInt(byte[] b, int off, int value) {
+    b[off] = (byte) value;
+    b[off + 1] = (byte) (value >> 8);
+    b[off + 2] = (byte) (value >> 16);
+    b[off + 3] = (byte) (value >> 24);
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
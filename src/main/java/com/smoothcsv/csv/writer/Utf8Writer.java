@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writer that encodes characters in UTF-8 to an {@link OutputStream} or a
+ * {@link WritableByteChannel}, without a {@link java.nio.charset.CharsetEncoder}.
+ * <p>
+ * The bytes are buffered, and written when the buffer is full or the writer is flushed. A
+ * surrogate pair may be split across calls. An unpaired surrogate is written as '?', as
+ * {@link java.io.OutputStreamWriter} does. This class is not thread-safe.
+ * </p>
+ *
+ * @author kohii
+ */
+final class Utf8Writer extends Writer {
+
+  private static final int BYTE_BUFFER_SIZE = 8192;
+
+  /**
+   * Bytes of a character in UTF-8 at most.
+   */
+  private static final int MAX_BYTES_PER_CHAR = 4;
+
+  private static final byte REPLACEMENT = '?';
+
+  private final OutputStream out;
+
+  private final WritableByteChannel channel;
+
+  private final byte[] bytes = new byte[BYTE_BUFFER_SIZE];
+  private int count;
+
+  /**
+   * The high surrogate at the end of the last call, or 0.
+   */
+  private char highSurrogate;
+
+  private boolean closed;
+
+  /**
+   * Constructs Utf8Writer.
+   *
+   * @param out The stream
+   */
+  Utf8Writer(OutputStream out) {
+    if (out == null) {
+      throw new NullPointerException("out");
+    }
+    this.out = out;
+    this.channel = null;
+  }
+
+  /**
+   * Constructs Utf8Writer.
+   *
+   * @param channel The channel
+   */
+  Utf8Writer(WritableByteChannel channel) {
+    if (channel == null) {
+      throw new NullPointerException("channel");
+    }
+    this.out = null;
+    this.channel = channel;
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    write(new char[]{(char) c}, 0, 1);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    ensureOpen();
+    if (off < 0 || len < 0 || off + len > cbuf.length) {
+      throw new IndexOutOfBoundsException("off: " + off + ", len: " + len);
+    }
+    byte[] b = bytes;
+    int n = count;
+    int i = off;
+    int end = off + len;
+    if (highSurrogate != 0 && i < end) {
+      if (n > BYTE_BUFFER_SIZE - MAX_BYTES_PER_CHAR) {
+        n = flushBytes(n);
+      }
+      char c = cbuf[i];
+      if (Character.isLowSurrogate(c)) {
+        n = putCodePoint(b, n, Character.toCodePoint(highSurrogate, c));
+        i++;
+      } else {
+        b[n++] = REPLACEMENT;
+      }
+      highSurrogate = 0;
+    }
+    while (i < end) {
+      if (n == BYTE_BUFFER_SIZE) {
+        n = flushBytes(n);
+      }
+      // ASCII runs are copied without branching on the length of each character
+      int asciiEnd = Math.min(end, i + BYTE_BUFFER_SIZE - n);
+      char c;
+      while (i < asciiEnd && (c = cbuf[i]) < 0x80) {
+        b[n++] = (byte) c;
+        i++;
+      }
+      if (i == asciiEnd) {
+        continue;
+      }
+      if (n > BYTE_BUFFER_SIZE - MAX_BYTES_PER_CHAR) {
+        n = flushBytes(n);
+      }
+      c = cbuf[i++];
+      if (c < 0x800) {
+        b[n++] = (byte) (0xC0 | (c >> 6));
+        b[n++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)) {
+        if (i == end) {
+          highSurrogate = c;
+        } else if (Character.isLowSurrogate(cbuf[i])) {
+          n = putCodePoint(b, n, Character.toCodePoint(c, cbuf[i++]));
+        } else {
+          b[n++] = REPLACEMENT;
+        }
+      } else if (Character.isLowSurrogate(c)) {
+        b[n++] = REPLACEMENT;
+      } else {
+        b[n++] = (byte) (0xE0 | (c >> 12));
+        b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        b[n++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    count = n;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    count = flushBytes(count);
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      if (highSurrogate != 0) {
+        highSurrogate = 0;
+        write(REPLACEMENT);
+      }
+      flush();
+    } finally {
+      closed = true;
+      if (out != null) {
+        out.close();
+      } else {
+        channel.close();
+      }
+    }
+  }
+
+  private static int putCodePoint(byte[] b, int n, int cp) {
+    b[n++] = (byte) (0xF0 | (cp >> 18));
+    b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+    b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+    b[n++] = (byte) (0x80 | (cp & 0x3F));
+    return n;
+  }
+
+  /**
+   * Writes the buffered bytes.
+   *
+   * @param n The number of the buffered bytes
+   * @return 0
+   * @throws IOException If an I/O error occurs
+   */
+  private int flushBytes(int n) throws IOException {
+    if (n > 0) {
+      if (out != null) {
+        out.write(bytes, 0, n);
+      } else {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, n);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    }
+    return 0;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
@@ -15,13 +15,20 @@ package com.smoothcsv.csv.reader;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import com.smoothcsv.csv.prop.CsvProperties;
 import com.smoothcsv.csv.prop.LineSeparator;
@@ -106,6 +113,112 @@ public class AbstractCsvReaderTest {
     }
   }
 
+  /**
+   * Test of readRow method with columns selected by index, of class AbstractCsvReader.
+   */
+  @Test
+  public void testReadRow_columns() throws Exception {
+    CsvReadOption options = CsvReadOption.DEFAULT.withColumns(ColumnSelection.indices(2, 0));
+    try (AbstractCsvReader<List<String>> instance =
+             createReader(CsvProperties.DEFAULT, options, "test_0.csv")) {
+      List<String> row = instance.readRow();
+      assertArrayEquals(new String[]{"a", "c"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"aaa", "ccc"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"ddd", "fff"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"a\na\na\n", "\nc\n\nc\n\nc"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"\",", ""}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"1", "3"}, row.toArray());
+      assertEquals(4, instance.getMaxColumnCount());
+    }
+  }
+
+  /**
+   * Test of readRow method with columns selected by name, of class AbstractCsvReader.
+   */
+  @Test
+  public void testReadRow_columnsByName() throws Exception {
+    String csv = "# comment\nid,name,\"note\"\n1,\"a,\"\"b\"\"\",x\n2,c\n";
+    CsvReadOption options = CsvReadOption.DEFAULT.withSkipCommentLines(true)
+        .withColumns(ColumnSelection.names("note", "id"));
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader(csv), CsvProperties.DEFAULT, options)) {
+      List<String> row = instance.readRow();
+      assertArrayEquals(new String[]{"id", "note"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"1", "x"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"2"}, row.toArray());
+      assertNull(instance.readRow());
+    }
+  }
+
+  /**
+   * Test of readRow method with a column name not in the header, of class AbstractCsvReader.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadRow_columnNotFound() throws Exception {
+    CsvReadOption options = CsvReadOption.DEFAULT.withColumns(ColumnSelection.names("x"));
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader("a,b\n"), CsvProperties.DEFAULT,
+                 options)) {
+      instance.readRow();
+    }
+  }
+
+  /**
+   * Test of addFilter method, of class AbstractCsvReader.
+   */
+  @Test
+  public void testAddFilter() throws Exception {
+    String csv = "id,status\n1,ACTIVE\n2,INACTIVE\n3,\"ACT\nIVE\"\n4,ACTIVE\n5\n6,ACTIVE,x\n";
+    List<Long> createdRows = new ArrayList<>();
+    CsvReadOption options = CsvReadOption.DEFAULT.withColumns(ColumnSelection.indices(0, 2));
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader(csv), CsvProperties.DEFAULT, options) {
+               @Override
+               public List<String> createNewRow(long rowIndex) {
+                 createdRows.add(rowIndex);
+                 return super.createNewRow(rowIndex);
+               }
+             }) {
+      instance.addFilter(1, ValueFilter.equalTo("ACTIVE"));
+      List<String> row = instance.readRow();
+      assertArrayEquals(new String[]{"1"}, row.toArray());
+      assertEquals(2, instance.getRowIndex());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"4"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"6", "x"}, row.toArray());
+      assertNull(instance.readRow());
+      assertEquals(Arrays.asList(1L, 4L, 6L), createdRows);
+    }
+  }
+
+  /**
+   * Test of setValueCache method, of class AbstractCsvReader.
+   */
+  @Test
+  public void testSetValueCache() throws Exception {
+    String csv = "JP,a\nUS,b\n\"J\"\"P\",c\n\"JP\",d\n";
+    try (AbstractCsvReader<List<String>> instance = new DefaultCsvReader(new StringReader(csv))) {
+      ValueCache cache = new ValueCache();
+      instance.setValueCache(cache);
+      List<List<String>> rows = instance.readAll();
+      assertEquals(Arrays.asList("JP", "a"), rows.get(0));
+      assertEquals(Arrays.asList("J\"P", "c"), rows.get(2));
+      assertSame(rows.get(0).get(0), rows.get(3).get(0));
+      assertEquals(1, cache.getHitCount(0));
+      assertEquals(3, cache.getMissCount(0));
+      assertEquals(0, cache.getHitCount(1));
+      assertEquals(0.25, cache.getHitRate(0), 0.001);
+    }
+  }
+
   /**
    * Test of skipRows method, of class AbstractCsvReader.
    */
@@ -161,6 +274,226 @@ public class AbstractCsvReaderTest {
     }
   }
 
+  /**
+   * Test of rows method on a parallel stream, of class AbstractCsvReader.
+   */
+  @Test
+  public void testRows_parallel() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      sb.append(i).append(",\"a\r\nb,\"\"c\"\"\",").append(i % 7 == 0 ? "" : "d").append("\r\n");
+      if (i % 100 == 0) {
+        sb.append("\n");
+      }
+    }
+    CsvReadOption options = CsvReadOption.DEFAULT.withSkipEmptyLines(true);
+    List<List<String>> expected;
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader(sb.toString()), CsvProperties.DEFAULT,
+                 options)) {
+      expected = instance.readAll();
+    }
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader(sb.toString()), CsvProperties.DEFAULT,
+                 options)) {
+      assertEquals(expected, instance.rows().parallel().collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Test of readRow method with a value much longer than the input-buffer, of class
+   * AbstractCsvReader.
+   */
+  @Test
+  public void testReadRow_longValue() throws Exception {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; value.length() < 1000000; i++) {
+      value.append("{\"\"k\"\":").append(i).append("}\r\n");
+    }
+    String csv = "a,b\n1,\"" + value + "\",c\n2,d\n";
+    int[] reads = new int[1];
+    Reader in = new StringReader(csv) {
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        reads[0]++;
+        return super.read(cbuf, off, len);
+      }
+    };
+    // the input-buffer starts with 10 characters
+    try (AbstractCsvReader<List<String>> instance = new AbstractCsvReaderImpl(in)) {
+      assertEquals(Arrays.asList("a", "b"), instance.readRow());
+      List<String> row = instance.readRow();
+      assertEquals(3, row.size());
+      assertEquals(value.toString().replace("\"\"", "\""), row.get(1));
+      assertEquals("c", row.get(2));
+      assertEquals(Arrays.asList("2", "d"), instance.readRow());
+      assertNull(instance.readRow());
+    }
+    // the input-buffer has grown while reading the long value
+    assertTrue(reads[0] < 100);
+  }
+
+  /**
+   * Test of setReadAhead method, of class AbstractCsvReader.
+   */
+  @Test
+  public void testSetReadAhead() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      sb.append(i).append(",\"a\r\nb,\"\"c\"\"\",d\r\n");
+    }
+    List<List<String>> expected;
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader(sb.toString()))) {
+      expected = instance.readAll();
+    }
+    // buffers of 7 characters split the CRLFs and the escaped quotes
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader(sb.toString()))) {
+      instance.setReadAhead(2, 7);
+      assertEquals(expected, instance.readAll());
+      assertNull(instance.readRow());
+    }
+    try (AbstractCsvReader<List<String>> instance =
+             new AbstractCsvReaderImpl(new StringReader(sb.toString()))) {
+      instance.setReadAhead(3, 100);
+      assertEquals(expected.subList(0, 2), Arrays.asList(instance.readRow(), instance.readRow()));
+      CsvCheckpoint checkpoint = instance.checkpoint();
+      assertEquals(expected.subList(2, 2000),
+          instance.rows().parallel().collect(Collectors.toList()));
+
+      try (AbstractCsvReader<List<String>> resumed =
+               new AbstractCsvReaderImpl(new StringReader(sb.toString()))) {
+        resumed.setReadAhead(1, 5);
+        resumed.resume(checkpoint);
+        assertEquals(expected.subList(2, 2000), resumed.readAll());
+      }
+    }
+  }
+
+  /**
+   * Test of setReadAhead method, of class AbstractCsvReader, with a Reader that fails.
+   */
+  @Test(expected = IOException.class)
+  public void testSetReadAhead_error() throws Exception {
+    Reader in = new StringReader("a,b\nc,d\n") {
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = super.read(cbuf, off, len);
+        if (n < 0) {
+          throw new IOException("failed");
+        }
+        return n;
+      }
+    };
+    try (AbstractCsvReader<List<String>> instance = new AbstractCsvReaderImpl(in)) {
+      instance.setReadAhead(2, 4);
+      assertEquals(Arrays.asList("a", "b"), instance.readRow());
+      instance.readAll();
+    }
+  }
+
+  /**
+   * Test of close method, of class AbstractCsvReader, while the Reader is read ahead.
+   */
+  @Test
+  public void testSetReadAhead_close() throws Exception {
+    AtomicBoolean reading = new AtomicBoolean();
+    AtomicBoolean closedWhileReading = new AtomicBoolean();
+    Reader in = new StringReader("a,b\nc,d\ne,f\n") {
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        reading.set(true);
+        try {
+          // a read that is not interrupted
+          long end = System.nanoTime() + 20_000_000L;
+          while (System.nanoTime() < end) {
+            // wait
+          }
+          return super.read(cbuf, off, len);
+        } finally {
+          reading.set(false);
+        }
+      }
+
+      @Override
+      public void close() {
+        closedWhileReading.set(reading.get());
+        super.close();
+      }
+    };
+    AbstractCsvReader<List<String>> instance = new AbstractCsvReaderImpl(in);
+    instance.setReadAhead(2, 4);
+    assertEquals(Arrays.asList("a", "b"), instance.readRow());
+    instance.close();
+    assertFalse(closedWhileReading.get());
+  }
+
+  /**
+   * Test of setReadAhead method, of class AbstractCsvReader, after reading a row.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testSetReadAhead_afterRead() throws Exception {
+    try (AbstractCsvReader<List<String>> instance = createReader()) {
+      instance.readRow();
+      instance.setReadAhead(2, 8192);
+    }
+  }
+
+  /**
+   * Test of handleValue method which receives a range of characters, of class AbstractCsvReader.
+   */
+  @Test
+  public void testHandleValue_charRange() throws Exception {
+    InputStreamReader isr =
+        new InputStreamReader(AbstractCsvReaderTest.class.getResourceAsStream("/test_0.csv"));
+    try (AbstractCsvReader<List<String>> instance = new CharRangeCsvReaderImpl(isr)) {
+      List<String> row = instance.readRow();
+      assertArrayEquals(new String[]{"a", "b", "c"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"aaa", "bbb", "ccc"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"ddd", "eee", "fff"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"a\na\na\n", "\nb\nb\nb\n", "\nc\n\nc\n\nc"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"\",", "", ""}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"1", "2", "3", "4"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{}, row.toArray());
+      row = instance.readRow();
+      assertNull(row);
+    }
+  }
+
+  public static class CharRangeCsvReaderImpl extends AbstractCsvReader<List<String>> {
+
+    public CharRangeCsvReaderImpl(Reader in) {
+      super(in, CsvProperties.DEFAULT, CsvReadOption.DEFAULT);
+    }
+
+    public List<String> createNewRow(long rowIndex) {
+      return new ArrayList<>();
+    }
+
+    @Override
+    protected void handleValue(List<String> row, long rowIndex, int columnIndex, char[] buffer,
+                               int offset, int length) {
+      row.add(String.valueOf(buffer, offset, length));
+    }
+
+    @Override
+    protected void handleValue(List<String> row, long rowIndex, int columnIndex, String value) {
+      row.add(value);
+    }
+
+    @Override
+    protected int charBufferSize() {
+      return 10;
+    }
+  }
+
   public static class AbstractCsvReaderImpl extends AbstractCsvReader<List<String>> {
 
     public AbstractCsvReaderImpl(Reader in) {
@@ -171,15 +504,15 @@ public class AbstractCsvReaderTest {
       super(in, prop, options);
     }
 
-    public List<String> createNewRow(int rowIndex) {
+    public List<String> createNewRow(long rowIndex) {
       return new ArrayList<>();
     }
 
-    public void handleValue(List<String> row, int rowIndex, int columnIndex, String value) {
+    public void handleValue(List<String> row, long rowIndex, int columnIndex, String value) {
       row.add(value);
     }
 
-    public void handleLineSeparator(List<String> row, int rowIndex, LineSeparator lineFeedCode) {
+    public void handleLineSeparator(List<String> row, long rowIndex, LineSeparator lineFeedCode) {
       // do nothing
     }
 
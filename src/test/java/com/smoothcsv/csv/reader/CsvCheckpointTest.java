@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.Test;
+
+/**
+ * @author kohii
+ */
+public class CsvCheckpointTest {
+
+  private static final String CSV = "\uFEFFid,name,note\n"
+      + "1,a,\"x\r\ny\"\r\n"
+      + "2,b,\n"
+      + "\n"
+      + "3,c,\"z\"\"\"\n"
+      + "4,d,w\n";
+
+  private static final CsvReadOption OPTIONS = CsvReadOption.DEFAULT
+      .withColumns(ColumnSelection.names("name", "id"))
+      .withSkipEmptyLines(true);
+
+  /**
+   * Test of checkpoint and resume methods, of class AbstractCsvReader.
+   */
+  @Test
+  public void testResume() throws Exception {
+    CsvCheckpoint checkpoint;
+    try (DefaultCsvReader reader = new DefaultCsvReader(new StringReader(CSV),
+        CsvProperties.DEFAULT, OPTIONS)) {
+      assertEquals(Arrays.asList("id", "name"), reader.readRow());
+      assertEquals(Arrays.asList("1", "a"), reader.readRow());
+      checkpoint = reader.checkpoint();
+    }
+    assertEquals(CSV.indexOf("2,b"), checkpoint.getOffset());
+    assertEquals(2, checkpoint.getRowIndex());
+
+    try (DefaultCsvReader reader = new DefaultCsvReader(new StringReader(CSV),
+        CsvProperties.DEFAULT, OPTIONS)) {
+      reader.resume(checkpoint);
+      assertEquals(2, reader.getRowIndex());
+      assertEquals(Arrays.asList("2", "b"), reader.readRow());
+      assertEquals(Arrays.asList("3", "c"), reader.readRow());
+      assertEquals(Arrays.asList("4", "d"), reader.readRow());
+      assertEquals(5, reader.getRowIndex());
+      assertNull(reader.readRow());
+    }
+  }
+
+  /**
+   * Test of checkpoint and resume methods, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testResume_bytes() throws Exception {
+    byte[] bytes = CSV.getBytes(StandardCharsets.UTF_8);
+    CsvCheckpoint checkpoint;
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(
+        ByteInput.of(ByteBuffer.wrap(bytes)), CsvProperties.DEFAULT, OPTIONS)) {
+      reader.readRow();
+      reader.readRow();
+      reader.readRow();
+      checkpoint = reader.checkpoint();
+    }
+    // the BOM is 3 bytes, and the empty line before the row 3 has not been read
+    assertEquals(CSV.indexOf("\n\n") + 3, checkpoint.getOffset());
+    assertEquals(3, checkpoint.getRowIndex());
+
+    // seekable
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(
+        ByteInput.of(ByteBuffer.wrap(bytes)), CsvProperties.DEFAULT, OPTIONS)) {
+      reader.readRow();
+      reader.readRow();
+      reader.readRow();
+      reader.readRow();
+      reader.resume(checkpoint);
+      assertEquals(Arrays.asList("3", "c"), reader.readRow());
+      assertEquals(Arrays.asList("4", "d"), reader.readRow());
+      assertNull(reader.readRow());
+    }
+
+    // not seekable
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(
+        ByteInput.of(new ByteArrayInputStream(bytes), 4), CsvProperties.DEFAULT, OPTIONS)) {
+      reader.resume(checkpoint);
+      assertEquals(Arrays.asList("3", "c"), reader.readRow());
+      assertEquals(Arrays.asList("4", "d"), reader.readRow());
+      assertEquals(5, reader.getRowIndex());
+      assertNull(reader.readRow());
+    }
+  }
+
+  /**
+   * Test of resume method, of class AbstractCsvReader, with a checkpoint of a byte reader.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testResume_byteCheckpoint() throws Exception {
+    CsvCheckpoint checkpoint;
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(
+        ByteInput.of(ByteBuffer.wrap(CSV.getBytes(StandardCharsets.UTF_8))),
+        CsvProperties.DEFAULT)) {
+      reader.readRow();
+      checkpoint = reader.checkpoint();
+    }
+    try (DefaultCsvReader reader = new DefaultCsvReader(new StringReader(CSV),
+        CsvProperties.DEFAULT)) {
+      reader.resume(checkpoint);
+    }
+  }
+
+  /**
+   * Test of writeTo and readFrom methods, of class CsvCheckpoint.
+   */
+  @Test
+  public void testWriteTo() throws Exception {
+    CsvCheckpoint checkpoint = new CsvCheckpoint(true, 1L << 40, 3000000000L, false,
+        new boolean[]{true, false, true}, 2, 5);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    checkpoint.writeTo(new DataOutputStream(out));
+    CsvCheckpoint read = CsvCheckpoint.readFrom(
+        new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+    assertEquals(checkpoint, read);
+    assertEquals(3000000000L, read.getRowIndex());
+
+    checkpoint = new CsvCheckpoint(false, 0, 0, true, null, -1, -1);
+    out.reset();
+    checkpoint.writeTo(new DataOutputStream(out));
+    assertEquals(checkpoint, CsvCheckpoint.readFrom(
+        new DataInputStream(new ByteArrayInputStream(out.toByteArray()))));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.Test;
+
+/**
+ * @author kohii
+ */
+public class CsvCursorTest {
+
+  /**
+   * Test of nextRow and nextField methods, of class CsvCursor.
+   */
+  @Test
+  public void testNextRow() throws Exception {
+    String csv = "name,count,price,flag\n\"a,\"\"b\",12,-1.25,TRUE\nc,9000000000,1e3,false\n";
+    try (CsvCursor cursor = new CsvCursor(new StringReader(csv), CsvProperties.DEFAULT)) {
+      assertTrue(cursor.nextRow());
+      assertEquals(4, cursor.getFieldCount());
+
+      assertTrue(cursor.nextRow());
+      assertTrue(cursor.nextField());
+      CharSequence name = cursor.fieldAsCharSequence();
+      assertEquals(4, name.length());
+      assertEquals('"', name.charAt(2));
+      assertEquals("a,\"b", name.toString());
+      assertTrue(cursor.nextField());
+      assertEquals(12, cursor.getInt());
+      assertTrue(cursor.nextField());
+      assertEquals(-1.25, cursor.getDouble(), 0);
+      assertTrue(cursor.nextField());
+      assertTrue(cursor.getBoolean());
+      assertEquals(3, cursor.getColumnIndex());
+      assertFalse(cursor.nextField());
+      assertFalse(cursor.nextField());
+
+      assertTrue(cursor.nextRow());
+      assertTrue(cursor.nextField());
+      assertEquals("c", cursor.getString());
+      assertTrue(cursor.nextField());
+      assertEquals(9000000000L, cursor.getLong());
+
+      assertFalse(cursor.nextRow());
+      assertFalse(cursor.nextField());
+    }
+  }
+
+  /**
+   * Test of getColumnIndex method, of class CsvCursor, with selected columns.
+   */
+  @Test
+  public void testGetColumnIndex() throws Exception {
+    CsvReadOption options = CsvReadOption.DEFAULT.withColumns(ColumnSelection.indices(1, 3));
+    try (CsvCursor cursor = new CsvCursor(new StringReader("a,b,c,,e\n"), CsvProperties.DEFAULT,
+        options)) {
+      assertTrue(cursor.nextRow());
+      assertEquals(2, cursor.getFieldCount());
+      assertTrue(cursor.nextField());
+      assertEquals(1, cursor.getColumnIndex());
+      assertEquals("b", cursor.getString());
+      assertTrue(cursor.nextField());
+      assertEquals(3, cursor.getColumnIndex());
+      assertTrue(cursor.isEmpty());
+    }
+  }
+
+  /**
+   * Test of getInt method, of class CsvCursor, before the first field.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testGetInt_noField() throws Exception {
+    try (CsvCursor cursor = new CsvCursor(new StringReader("1\n"), CsvProperties.DEFAULT)) {
+      cursor.nextRow();
+      cursor.getInt();
+    }
+  }
+}
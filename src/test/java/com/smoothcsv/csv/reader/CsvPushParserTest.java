@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.Test;
+
+/**
+ * @author kohii
+ */
+public class CsvPushParserTest {
+
+  /**
+   * Test of feed method, of class CsvPushParser.
+   */
+  @Test
+  public void testFeed() throws Exception {
+    List<List<String>> rows = new ArrayList<>();
+    CsvPushParser<List<String>> parser = new CsvPushParser<>(
+        in -> new DefaultCsvReader(in, CsvProperties.DEFAULT), rows::add);
+
+    parser.feed("a,\"b");
+    assertEquals(0, rows.size());
+    assertEquals(4, parser.getPendingLength());
+    parser.feed("\r\nc\",d\r");
+    // the CR may be followed by LF
+    assertEquals(0, rows.size());
+    parser.feed("\ne,f\r\ng");
+    assertEquals(Arrays.asList(Arrays.asList("a", "b\r\nc", "d"), Arrays.asList("e", "f")), rows);
+    assertEquals(1, parser.getPendingLength());
+    assertEquals(2, parser.getRowIndex());
+
+    parser.endOfInput();
+    assertEquals(Arrays.asList("g"), rows.get(2));
+    assertEquals(3, parser.getRowIndex());
+    assertEquals(0, parser.getPendingLength());
+  }
+
+  /**
+   * Test of feed method, of class CsvPushParser, with bytes.
+   */
+  @Test
+  public void testFeed_bytes() throws Exception {
+    List<List<String>> rows = new ArrayList<>();
+    CsvPushParser<List<String>> parser = new CsvPushParser<>(
+        in -> new DefaultCsvReader(in, CsvProperties.DEFAULT), rows::add);
+    byte[] bytes = "\uFEFFあ,\"い\"\nう,え".getBytes(StandardCharsets.UTF_8);
+    // feed the bytes one by one
+    for (byte b : bytes) {
+      parser.feed(ByteBuffer.wrap(new byte[]{b}));
+    }
+    parser.endOfInput();
+    assertEquals(Arrays.asList(Arrays.asList("あ", "い"), Arrays.asList("う", "え")), rows);
+  }
+
+  /**
+   * Test of feed method, of class CsvPushParser, with columns selected by name.
+   */
+  @Test
+  public void testFeed_header() throws Exception {
+    List<List<String>> rows = new ArrayList<>();
+    CsvReadOption options = CsvReadOption.DEFAULT
+        .withColumns(ColumnSelection.names("b"))
+        .withSkipCommentLines(true);
+    CsvPushParser<List<String>> parser = new CsvPushParser<>(
+        in -> new DefaultCsvReader(in, CsvProperties.DEFAULT, options), rows::add);
+    String csv = "a,b\n#c,d\n1,2\n3,4";
+    for (int i = 0; i < csv.length(); i += 3) {
+      parser.feed(csv.substring(i, Math.min(i + 3, csv.length())));
+    }
+    parser.endOfInput();
+    assertEquals(
+        Arrays.asList(Arrays.asList("b"), Arrays.asList("2"), Arrays.asList("4")), rows);
+  }
+
+  /**
+   * Test of feed method, of class CsvPushParser, with the checkpoints after incomplete chunks.
+   */
+  @Test
+  public void testFeed_checkpoint() throws Exception {
+    List<List<String>> rows = new ArrayList<>();
+    int[] createdRows = new int[1];
+    List<DefaultCsvReader> readers = new ArrayList<>();
+    CsvPushParser<List<String>> parser = new CsvPushParser<>(in -> {
+      DefaultCsvReader reader = new DefaultCsvReader(in, CsvProperties.DEFAULT) {
+        @Override
+        protected List<String> createNewRow(long rowIndex) {
+          createdRows[0]++;
+          return super.createNewRow(rowIndex);
+        }
+      };
+      readers.add(reader);
+      return reader;
+    }, rows::add);
+    DefaultCsvReader reader = readers.get(0);
+
+    String csv = "a,\"b\r\nc\",d\r\ne,\"f\"\"\"\ng,h";
+    String[] chunks = {"a,\"b", "\r\n", "c\",", "d\r", "\ne,\"", "f\"\"", "\"\ng", ",h"};
+    int[] rowCounts = {0, 0, 0, 0, 1, 1, 2, 2};
+    int[] offsets = {0, 0, 0, 0, 12, 12, 20, 20};
+    for (int i = 0; i < chunks.length; i++) {
+      parser.feed(chunks[i]);
+      assertEquals(rowCounts[i], rows.size());
+      // no row object is created for the row that is not complete
+      assertEquals(rowCounts[i], createdRows[0]);
+      CsvCheckpoint checkpoint = reader.checkpoint();
+      assertEquals(offsets[i], checkpoint.getOffset());
+      assertEquals(rowCounts[i], checkpoint.getRowIndex());
+
+      // another reader resumes from the checkpoint
+      DefaultCsvReader resumed = new DefaultCsvReader(new StringReader(csv), CsvProperties.DEFAULT);
+      resumed.resume(checkpoint);
+      List<List<String>> rest = resumed.readAll();
+      assertEquals(3 - rowCounts[i], rest.size());
+      assertEquals(Arrays.asList("g", "h"), rest.get(rest.size() - 1));
+    }
+    parser.endOfInput();
+    assertEquals(Arrays.asList(Arrays.asList("a", "b\r\nc", "d"), Arrays.asList("e", "f\""),
+        Arrays.asList("g", "h")), rows);
+    assertEquals(3, createdRows[0]);
+  }
+
+  /**
+   * Test of feed method, of class CsvPushParser, after the end of the input.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testFeed_ended() throws Exception {
+    CsvPushParser<List<String>> parser = new CsvPushParser<>(
+        in -> new DefaultCsvReader(in, CsvProperties.DEFAULT), row -> {
+    });
+    parser.endOfInput();
+    parser.feed("a");
+  }
+}
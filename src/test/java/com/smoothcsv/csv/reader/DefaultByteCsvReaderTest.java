@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import com.smoothcsv.csv.prop.QuoteEscapeRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author kohii
+ */
+public class DefaultByteCsvReaderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public DefaultByteCsvReaderTest() {}
+
+  /**
+   * Test of readRow method, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testReadRow_inputStream() throws Exception {
+    byte[] bytes = readResource("test_0.csv");
+    try (DefaultByteCsvReader instance =
+             new DefaultByteCsvReader(ByteInput.of(new ByteArrayInputStream(bytes), 10))) {
+      assertTestData(instance);
+    }
+  }
+
+  /**
+   * Test of readRow method, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testReadRow_channel() throws Exception {
+    byte[] bytes = readResource("test_0.csv");
+    ByteInput in = ByteInput.of(Channels.newChannel(new ByteArrayInputStream(bytes)), 10);
+    try (DefaultByteCsvReader instance = new DefaultByteCsvReader(in)) {
+      assertTestData(instance);
+    }
+  }
+
+  /**
+   * Test of readRow method, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testReadRow_directBuffer() throws Exception {
+    byte[] bytes = readResource("test_0.tsv");
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    CsvProperties prop = CsvProperties.of('\t', '"', QuoteEscapeRule.repeatQuoteChar());
+    try (DefaultByteCsvReader instance = new DefaultByteCsvReader(ByteInput.of(buffer), prop)) {
+      assertTestData(instance);
+    }
+  }
+
+  /**
+   * Test of readRow method, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testReadRow_mappedFile() throws Exception {
+    Path path = folder.newFile("test_0.csv").toPath();
+    Files.write(path, readResource("test_0.csv"));
+    try (DefaultByteCsvReader instance = new DefaultByteCsvReader(ByteInput.map(path, 7))) {
+      assertTestData(instance);
+    }
+    try (DefaultByteCsvReader instance = new DefaultByteCsvReader(ByteInput.map(path))) {
+      assertTestData(instance);
+    }
+  }
+
+  /**
+   * Test of readRow method, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testReadRow_multibyte() throws Exception {
+    String csv = "﻿日本語,\"東京,大阪\"\r\n\"引用\"\"符\",é\r\n";
+    byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+    try (DefaultByteCsvReader instance =
+             new DefaultByteCsvReader(ByteInput.of(new ByteArrayInputStream(bytes), 4))) {
+      List<String> row = instance.readRow();
+      assertArrayEquals(new String[]{"日本語", "東京,大阪"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"引用\"符", "é"}, row.toArray());
+      assertNull(instance.readRow());
+    }
+  }
+
+  /**
+   * Test of rows method on a parallel stream, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testRows_parallel() throws Exception {
+    StringBuilder sb = new StringBuilder("\uFEFF");
+    for (int i = 0; i < 5000; i++) {
+      sb.append(i).append(",\"あ\r\nい,\"\"う\"\"\",").append(i % 7 == 0 ? "" : "え").append("\n");
+      if (i % 100 == 0) {
+        sb.append("# comment\n");
+      }
+    }
+    byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+    CsvReadOption options = CsvReadOption.DEFAULT.withSkipCommentLines(true);
+    List<List<String>> expected;
+    try (DefaultByteCsvReader instance = new DefaultByteCsvReader(
+        ByteInput.of(ByteBuffer.wrap(bytes)), CsvProperties.DEFAULT, options)) {
+      expected = instance.readAll();
+    }
+    try (DefaultByteCsvReader instance = new DefaultByteCsvReader(
+        ByteInput.of(new ByteArrayInputStream(bytes), 100), CsvProperties.DEFAULT, options)) {
+      assertEquals(expected, instance.rows().parallel().collect(Collectors.toList()));
+    }
+    Path path = folder.newFile("parallel.csv").toPath();
+    Files.write(path, bytes);
+    for (int windowSize : new int[]{1000, 100000, bytes.length}) {
+      try (DefaultByteCsvReader instance = new DefaultByteCsvReader(
+          ByteInput.map(path, windowSize), CsvProperties.DEFAULT, options)) {
+        assertEquals(expected, instance.rows().parallel().collect(Collectors.toList()));
+      }
+    }
+  }
+
+  /**
+   * Test of readRow method with columns selected by name, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testReadRow_columnsByName() throws Exception {
+    byte[] bytes = "名前,id,備考\r\n\"東京\r\n大阪\",1,x\r\n京都,2\r\n".getBytes(StandardCharsets.UTF_8);
+    CsvReadOption options =
+        CsvReadOption.DEFAULT.withColumns(ColumnSelection.names("id", "名前"));
+    try (DefaultByteCsvReader instance = new DefaultByteCsvReader(
+        ByteInput.of(new ByteArrayInputStream(bytes), 5), CsvProperties.DEFAULT, options)) {
+      List<String> row = instance.readRow();
+      assertArrayEquals(new String[]{"名前", "id"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"東京\r\n大阪", "1"}, row.toArray());
+      row = instance.readRow();
+      assertArrayEquals(new String[]{"京都", "2"}, row.toArray());
+      assertNull(instance.readRow());
+    }
+  }
+
+  /**
+   * Test of getPosition method, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testGetPosition() throws Exception {
+    byte[] bytes = "あ,b\n\"c\nd\",e\n".getBytes(StandardCharsets.UTF_8);
+    try (DefaultByteCsvReader instance =
+             new DefaultByteCsvReader(ByteInput.of(ByteBuffer.wrap(bytes)))) {
+      assertEquals(0, instance.getPosition());
+      instance.readRow();
+      assertEquals(6, instance.getPosition());
+      instance.readRow();
+      assertEquals(bytes.length, instance.getPosition());
+    }
+  }
+
+  /**
+   * Test of readRow method, of class DefaultByteCsvReader, with a reused list.
+   */
+  @Test
+  public void testReadRow_reuse() throws Exception {
+    byte[] bytes = "a,b,c\nd\n".getBytes(StandardCharsets.UTF_8);
+    try (DefaultByteCsvReader instance =
+             new DefaultByteCsvReader(ByteInput.of(ByteBuffer.wrap(bytes)))) {
+      List<String> row = new ArrayList<>();
+      assertSame(row, instance.readRow(row));
+      assertArrayEquals(new String[]{"a", "b", "c"}, row.toArray());
+      assertSame(row, instance.readRow(row));
+      assertArrayEquals(new String[]{"d"}, row.toArray());
+      assertNull(instance.readRow(row));
+    }
+  }
+
+  /**
+   * Test of the constructor of class AbstractByteCsvReader.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonAsciiSeparator() {
+    new DefaultByteCsvReader(ByteInput.of(ByteBuffer.allocate(0)), CsvProperties.of('、'));
+  }
+
+  private static void assertTestData(DefaultByteCsvReader instance) throws IOException {
+    List<String> row = instance.readRow();
+    assertArrayEquals(new String[]{"a", "b", "c"}, row.toArray());
+    row = instance.readRow();
+    assertArrayEquals(new String[]{"aaa", "bbb", "ccc"}, row.toArray());
+    row = instance.readRow();
+    assertArrayEquals(new String[]{"ddd", "eee", "fff"}, row.toArray());
+    row = instance.readRow();
+    assertArrayEquals(new String[]{"a\na\na\n", "\nb\nb\nb\n", "\nc\n\nc\n\nc"}, row.toArray());
+    row = instance.readRow();
+    assertArrayEquals(new String[]{"\",", "", ""}, row.toArray());
+    row = instance.readRow();
+    assertArrayEquals(new String[]{"1", "2", "3", "4"}, row.toArray());
+    row = instance.readRow();
+    assertArrayEquals(new String[]{}, row.toArray());
+    row = instance.readRow();
+    assertNull(row);
+  }
+
+  private static byte[] readResource(String name) throws IOException {
+    try (InputStream is = DefaultByteCsvReaderTest.class.getResourceAsStream("/" + name)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] b = new byte[1024];
+      int n;
+      while ((n = is.read(b)) >= 0) {
+        out.write(b, 0, n);
+      }
+      return out.toByteArray();
+    }
+  }
+}
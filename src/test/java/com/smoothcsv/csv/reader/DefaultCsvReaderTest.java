@@ -15,6 +15,8 @@ package com.smoothcsv.csv.reader;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -62,7 +64,7 @@ public class DefaultCsvReaderTest {
   @Test
   public void testHandleValue() {
     List<String> row = new ArrayList<>();
-    int rowIndex = 0;
+    long rowIndex = 0;
     String data = "abc";
     int columnIndex = 0;
     csvReader.handleValue(row, rowIndex, columnIndex, data);
@@ -71,6 +73,23 @@ public class DefaultCsvReaderTest {
 
   }
 
+  /**
+   * Test of readRow method, of class DefaultCsvReader, with a reused list.
+   */
+  @Test
+  public void testReadRow_reuse() throws IOException {
+    List<String> row = new ArrayList<>();
+    assertSame(row, csvReader.readRow(row));
+    assertEquals(3, row.size());
+    List<String> next = csvReader.readRow();
+    assertNotSame(row, next);
+    List<String> rows = new ArrayList<>();
+    while (csvReader.readRow(row) != null) {
+      rows.add(String.join(",", row));
+    }
+    assertEquals(csvReader.getRowIndex() - 2, rows.size());
+  }
+
   private static DefaultCsvReader createReader() {
     InputStreamReader isr =
         new InputStreamReader(DefaultCsvReaderTest.class.getResourceAsStream("/test_0.csv"));
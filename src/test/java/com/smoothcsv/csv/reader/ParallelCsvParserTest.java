@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author kohii
+ */
+public class ParallelCsvParserTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public ParallelCsvParserTest() {}
+
+  @AfterClass
+  public static void tearDownClass() {
+    POOL.shutdown();
+  }
+
+  /**
+   * Test of forEachOrdered method, of class ParallelCsvParser.
+   */
+  @Test
+  public void testForEachOrdered() throws Exception {
+    byte[] bytes = generate(new Random(1));
+    Path path = folder.newFile("test.csv").toPath();
+    Files.write(path, bytes);
+    List<List<String>> expected = readSequentially(bytes);
+
+    for (long chunkSize : new long[]{1, 7, 64, 1000, bytes.length}) {
+      List<List<String>> actual = new ArrayList<>();
+      new ParallelCsvParser<>(path, IndexedCsvReader::new, POOL, chunkSize)
+          .forEachOrdered(actual::add);
+      assertEquals("chunkSize=" + chunkSize, expected, actual);
+    }
+  }
+
+  /**
+   * Test of forEach method, of class ParallelCsvParser.
+   */
+  @Test
+  public void testForEach() throws Exception {
+    byte[] bytes = generate(new Random(2));
+    Path path = folder.newFile("test.csv").toPath();
+    Files.write(path, bytes);
+    List<List<String>> expected = readSequentially(bytes);
+
+    List<List<String>> actual = Collections.synchronizedList(new ArrayList<>());
+    new ParallelCsvParser<>(path, IndexedCsvReader::new, POOL, 50).forEach(actual::add);
+    actual.sort(Comparator.comparing(row -> Integer.valueOf(row.get(0))));
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Test of forEachOrdered method with columns selected by name, of class ParallelCsvParser.
+   */
+  @Test
+  public void testForEachOrdered_columnsByName() throws Exception {
+    byte[] bytes = ("a,b,c\n" + new String(generate(new Random(3)), StandardCharsets.UTF_8))
+        .getBytes(StandardCharsets.UTF_8);
+    Path path = folder.newFile("test.csv").toPath();
+    Files.write(path, bytes);
+    CsvReadOption options = CsvReadOption.DEFAULT.withColumns(ColumnSelection.names("c", "a"));
+    List<List<String>> expected;
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(
+        ByteInput.of(ByteBuffer.wrap(bytes)), CsvProperties.DEFAULT, options)) {
+      expected = reader.readAll();
+    }
+
+    List<List<String>> actual = new ArrayList<>();
+    new ParallelCsvParser<>(path,
+        in -> new DefaultByteCsvReader(in, CsvProperties.DEFAULT, options), POOL, 20)
+        .forEachOrdered(actual::add);
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Test of forEach method, of class ParallelCsvParser.
+   */
+  @Test
+  public void testForEach_emptyFile() throws Exception {
+    Path path = folder.newFile("empty.csv").toPath();
+    List<List<String>> actual = new ArrayList<>();
+    new ParallelCsvParser<>(path, DefaultByteCsvReader::new).forEach(actual::add);
+    assertTrue(actual.isEmpty());
+  }
+
+  /**
+   * Test of forEach method, of class ParallelCsvParser, when the action throws an exception.
+   */
+  @Test
+  public void testForEach_error() throws Exception {
+    byte[] bytes = generate(new Random(4));
+    Path path = folder.newFile("test.csv").toPath();
+    Files.write(path, bytes);
+
+    AtomicInteger running = new AtomicInteger();
+    try {
+      new ParallelCsvParser<>(path, IndexedCsvReader::new, POOL, 50).forEach(row -> {
+        running.incrementAndGet();
+        try {
+          if (row.get(0).equals("10")) {
+            throw new IllegalStateException();
+          }
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          running.decrementAndGet();
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      // the other tasks have ended before the file is closed
+      assertEquals(0, running.get());
+    }
+  }
+
+  private static List<List<String>> readSequentially(byte[] bytes) throws Exception {
+    try (IndexedCsvReader reader = new IndexedCsvReader(ByteInput.of(ByteBuffer.wrap(bytes)))) {
+      return reader.readAll();
+    }
+  }
+
+  /**
+   * Generates CSV with many quoted values containing line breaks, so that many chunks start in the
+   * middle of a quoted value.
+   */
+  private static byte[] generate(Random random) {
+    StringBuilder sb = new StringBuilder("﻿");
+    for (int i = 0; i < 300; i++) {
+      int columns = 1 + random.nextInt(4);
+      for (int j = 0; j < columns; j++) {
+        if (j != 0) {
+          sb.append(',');
+        }
+        switch (random.nextInt(5)) {
+          case 0:
+            sb.append("\"a\r\nb,\"\"\nc\"");
+            break;
+          case 1:
+            sb.append("\"\n\n\"");
+            break;
+          case 2:
+            sb.append("日本語");
+            break;
+          default:
+            sb.append(random.nextInt(1000));
+            break;
+        }
+      }
+      sb.append(random.nextBoolean() ? "\r\n" : "\n");
+      if (random.nextInt(10) == 0) {
+        sb.append('\r');
+      }
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Prepends the row index to the values of each row.
+   */
+  private static class IndexedCsvReader extends DefaultByteCsvReader {
+
+    IndexedCsvReader(ByteInput in) {
+      super(in, CsvProperties.DEFAULT);
+    }
+
+    @Override
+    protected List<String> createNewRow(long rowIndex) {
+      List<String> row = super.createNewRow(rowIndex);
+      row.add(Long.toString(rowIndex));
+      return row;
+    }
+  }
+}
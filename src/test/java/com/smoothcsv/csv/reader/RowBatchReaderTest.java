@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.Test;
+
+/**
+ * @author kohii
+ */
+public class RowBatchReaderTest {
+
+  /**
+   * Test of read method, of class RowBatchReader.
+   */
+  @Test
+  public void testRead() throws Exception {
+    String csv = "id,name,amount,score\n"
+        + "1,\"a,\"\"b\",-9000000000,1.5\n"
+        + "2,,12,\n"
+        + "-3,c\n"
+        + "4,dd,7,-2.5e3,extra\n"
+        + "5,e,8,1e-400\n";
+    RowBatch batch = new RowBatch(3, ColumnType.INT, ColumnType.STRING, ColumnType.LONG,
+        ColumnType.DOUBLE);
+    try (RowBatchReader reader = new RowBatchReader(new StringReader(csv),
+        CsvProperties.DEFAULT)) {
+      assertEquals(1, reader.skipRows(1));
+
+      assertEquals(3, reader.read(batch));
+      assertArrayEquals(new int[]{1, 2, -3}, Arrays.copyOf(batch.getIntVector(0), 3));
+      assertEquals("a,\"b", batch.getString(1, 0));
+      assertNull(batch.getString(1, 1));
+      assertEquals("c", batch.getString(1, 2));
+      assertEquals(-9000000000L, batch.getLong(2, 0));
+      assertEquals(12, batch.getLong(2, 1));
+      assertTrue(batch.isNull(2, 2));
+      assertEquals(1.5, batch.getDouble(3, 0), 0);
+      assertTrue(batch.isNull(3, 1));
+      assertTrue(batch.isNull(3, 2));
+      assertFalse(batch.isNull(0, 2));
+      char[] arena = batch.getArena();
+
+      assertEquals(2, reader.read(batch));
+      assertEquals(4, batch.getInt(0, 0));
+      assertEquals("dd", batch.getString(1, 0));
+      assertEquals(-2500, batch.getDouble(3, 0), 0);
+      assertEquals(0, batch.getDouble(3, 1), 0);
+      assertFalse(batch.isNull(3, 1));
+      assertSame(arena, batch.getArena());
+
+      assertEquals(0, reader.read(batch));
+    }
+  }
+
+  /**
+   * Test of read method, of class RowBatchReader, with columns selected by name.
+   */
+  @Test
+  public void testRead_columnNames() throws Exception {
+    String csv = "id,name,amount\n"
+        + "1,a,10\n"
+        + "2,b,20\n";
+    RowBatch batch = new RowBatch(10, ColumnType.INT, ColumnType.STRING, ColumnType.LONG);
+    CsvReadOption options =
+        CsvReadOption.DEFAULT.withColumns(ColumnSelection.names("amount", "name"));
+    try (RowBatchReader reader = new RowBatchReader(new StringReader(csv), CsvProperties.DEFAULT,
+        options)) {
+      assertEquals(2, reader.read(batch));
+      assertTrue(batch.isNull(0, 0));
+      assertEquals("a", batch.getString(1, 0));
+      assertEquals("b", batch.getString(1, 1));
+      assertEquals(10, batch.getLong(2, 0));
+      assertEquals(20, batch.getLong(2, 1));
+      assertEquals(0, reader.read(batch));
+    }
+  }
+
+  /**
+   * Test of read method, of class RowBatchReader, with a value that is not a number.
+   */
+  @Test(expected = NumberFormatException.class)
+  public void testRead_notNumber() throws Exception {
+    RowBatch batch = new RowBatch(10, ColumnType.STRING, ColumnType.INT);
+    try (RowBatchReader reader = new RowBatchReader(new StringReader("a,1\nb,x\n"),
+        CsvProperties.DEFAULT)) {
+      reader.read(batch);
+    }
+  }
+
+  /**
+   * Test of readRow method, of class RowBatchReader.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testReadRow() throws Exception {
+    try (RowBatchReader reader = new RowBatchReader(new StringReader("1\n"),
+        CsvProperties.DEFAULT)) {
+      reader.readRow();
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author kohii
+ */
+public class RowOffsetIndexTest {
+
+  private static final CsvReadOption OPTIONS = CsvReadOption.DEFAULT.withSkipEmptyLines(true);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Test of build method, of class RowOffsetIndex.
+   */
+  @Test
+  public void testBuild() throws Exception {
+    byte[] bytes = createCsv(10);
+    RowOffsetIndex index = RowOffsetIndex.build(ByteInput.of(ByteBuffer.wrap(bytes)),
+        CsvProperties.DEFAULT, OPTIONS, 4);
+    assertEquals(4, index.getInterval());
+    assertEquals(10, index.getRowCount());
+    assertEquals(bytes.length, index.getSize());
+    assertEquals(3, index.getOffsetCount());
+    assertEquals(0, index.getOffset(3));
+    assertEquals(8, index.getIndexedRow(9));
+    // the empty line before the row 8
+    assertEquals(new String(bytes, StandardCharsets.UTF_8).indexOf("\n8,"), index.getOffset(9));
+  }
+
+  /**
+   * Test of seekToRow method, of class AbstractByteCsvReader.
+   */
+  @Test
+  public void testSeekToRow() throws Exception {
+    Path path = folder.newFile("test.csv").toPath();
+    Files.write(path, createCsv(100));
+    RowOffsetIndex index = RowOffsetIndex.build(path, CsvProperties.DEFAULT, OPTIONS);
+    assertEquals(100, index.getRowCount());
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(ByteInput.map(path),
+        CsvProperties.DEFAULT, OPTIONS)) {
+      reader.setRowOffsetIndex(index);
+      for (int row : new int[]{57, 3, 99, 0, 58, 58}) {
+        assertTrue(reader.seekToRow(row));
+        assertRow(row, reader.readRow());
+        assertEquals(row + 1, reader.getRowIndex());
+      }
+      assertTrue(reader.seekToRow(100));
+      assertNull(reader.readRow());
+      assertFalse(reader.seekToRow(101));
+    }
+  }
+
+  /**
+   * Test of seekToRow method, of class AbstractByteCsvReader, without an index.
+   */
+  @Test
+  public void testSeekToRow_noIndex() throws Exception {
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(
+        ByteInput.of(ByteBuffer.wrap(createCsv(20))), CsvProperties.DEFAULT, OPTIONS)) {
+      for (int row : new int[]{7, 2, 19}) {
+        assertTrue(reader.seekToRow(row));
+        assertRow(row, reader.readRow());
+      }
+    }
+  }
+
+  /**
+   * Test of seekToRow method, of class AbstractByteCsvReader, on a stream.
+   */
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSeekToRow_stream() throws Exception {
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(
+        ByteInput.of(new ByteArrayInputStream(createCsv(20))), CsvProperties.DEFAULT, OPTIONS)) {
+      assertTrue(reader.seekToRow(5));
+      assertRow(5, reader.readRow());
+      reader.seekToRow(4);
+    }
+  }
+
+  /**
+   * Test of save and load methods, of class RowOffsetIndex.
+   */
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    Path path = folder.newFile("test.csv").toPath();
+    Path indexFile = folder.getRoot().toPath().resolve("test.csv.idx");
+    Files.write(path, createCsv(3000));
+    RowOffsetIndex index = RowOffsetIndex.build(path, CsvProperties.DEFAULT, OPTIONS);
+    index.save(indexFile, path, CsvProperties.DEFAULT, OPTIONS);
+
+    RowOffsetIndex loaded = RowOffsetIndex.load(indexFile, path, CsvProperties.DEFAULT, OPTIONS);
+    assertEquals(index.getInterval(), loaded.getInterval());
+    assertEquals(index.getRowCount(), loaded.getRowCount());
+    assertEquals(index.getSize(), loaded.getSize());
+    assertEquals(index.getOffsetCount(), loaded.getOffsetCount());
+    for (int i = 0; i < index.getOffsetCount(); i++) {
+      assertEquals(index.getOffsetAt(i), loaded.getOffsetAt(i));
+    }
+
+    assertNull(RowOffsetIndex.load(indexFile, path, CsvProperties.DEFAULT, CsvReadOption.DEFAULT));
+    assertNull(RowOffsetIndex.load(indexFile, path, CsvProperties.of('\t'), OPTIONS));
+    assertNull(RowOffsetIndex.load(folder.getRoot().toPath().resolve("none.idx"), path,
+        CsvProperties.DEFAULT, OPTIONS));
+  }
+
+  /**
+   * Test of load method, of class RowOffsetIndex, after the file has changed.
+   */
+  @Test
+  public void testLoad_changed() throws Exception {
+    Path path = folder.newFile("test.csv").toPath();
+    Path indexFile = folder.getRoot().toPath().resolve("test.csv.idx");
+    byte[] bytes = createCsv(100);
+    Files.write(path, bytes);
+    FileTime lastModified = Files.getLastModifiedTime(path);
+    RowOffsetIndex.build(path, CsvProperties.DEFAULT, OPTIONS)
+        .save(indexFile, path, CsvProperties.DEFAULT, OPTIONS);
+
+    // same size and last modified time
+    bytes[0] = '9';
+    Files.write(path, bytes);
+    Files.setLastModifiedTime(path, lastModified);
+    assertNull(RowOffsetIndex.load(indexFile, path, CsvProperties.DEFAULT, OPTIONS));
+
+    bytes[0] = '0';
+    Files.write(path, bytes);
+    Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified.toMillis() + 2000));
+    assertNull(RowOffsetIndex.load(indexFile, path, CsvProperties.DEFAULT, OPTIONS));
+  }
+
+  /**
+   * Test of close method, of class RowOffsetIndex.
+   */
+  @Test
+  public void testClose() throws Exception {
+    Path path = folder.newFile("test.csv").toPath();
+    Path indexFile = folder.getRoot().toPath().resolve("test.csv.idx");
+    Files.write(path, createCsv(3000));
+    RowOffsetIndex.build(path, CsvProperties.DEFAULT, OPTIONS)
+        .save(indexFile, path, CsvProperties.DEFAULT, OPTIONS);
+
+    RowOffsetIndex loaded = RowOffsetIndex.load(indexFile, path, CsvProperties.DEFAULT, OPTIONS);
+    assertEquals(2048, loaded.getIndexedRow(2999));
+    long offset = loaded.getOffset(2999);
+    loaded.close();
+    loaded.close();
+    try {
+      loaded.getOffset(2999);
+      throw new AssertionError("no exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    Files.delete(indexFile);
+
+    try (RowOffsetIndex index = RowOffsetIndex.open(path, CsvProperties.DEFAULT, OPTIONS)) {
+      assertEquals(offset, index.getOffset(2999));
+    }
+    assertTrue(Files.exists(indexFile));
+  }
+
+  /**
+   * Test of open method, of class RowOffsetIndex.
+   */
+  @Test
+  public void testOpen() throws Exception {
+    Path path = folder.newFile("test.csv").toPath();
+    Path indexFile = folder.getRoot().toPath().resolve("test.csv" + RowOffsetIndex.SIDECAR_SUFFIX);
+    Files.write(path, createCsv(100));
+    RowOffsetIndex index = RowOffsetIndex.open(path, CsvProperties.DEFAULT, OPTIONS);
+    assertTrue(Files.exists(indexFile));
+    assertEquals(100, index.getRowCount());
+
+    FileTime saved = Files.getLastModifiedTime(indexFile);
+    Files.setLastModifiedTime(indexFile, FileTime.fromMillis(saved.toMillis() - 10000));
+    saved = Files.getLastModifiedTime(indexFile);
+    index = RowOffsetIndex.open(path, CsvProperties.DEFAULT, OPTIONS);
+    assertEquals(saved, Files.getLastModifiedTime(indexFile));
+
+    try (DefaultByteCsvReader reader = new DefaultByteCsvReader(ByteInput.map(path),
+        CsvProperties.DEFAULT, OPTIONS)) {
+      reader.setRowOffsetIndex(index);
+      assertTrue(reader.seekToRow(77));
+      assertRow(77, reader.readRow());
+    }
+  }
+
+  private static byte[] createCsv(int rows) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      sb.append(i).append(",\"multi\nline ").append(i).append("\"\n");
+      if (i % 7 == 0) {
+        sb.append('\n');
+      }
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void assertRow(int i, List<String> row) {
+    assertEquals(String.valueOf(i), row.get(0));
+    assertEquals("multi\nline " + i, row.get(1));
+  }
+}
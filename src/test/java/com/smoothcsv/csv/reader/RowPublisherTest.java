@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * @author kohii
+ */
+public class RowPublisherTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Test of subscribe method, of class RowPublisher.
+   */
+  @Test
+  public void testSubscribe() throws Exception {
+    CountingReader reader = new CountingReader(createCsv(1000));
+    RowPublisher<List<String>> publisher = new RowPublisher<>(reader, executor, 16);
+    TestSubscriber subscriber = new TestSubscriber();
+    publisher.subscribe(subscriber);
+
+    // rows are read ahead up to the prefetch without any request
+    Thread.sleep(100);
+    assertEquals(16, reader.count.get());
+    assertTrue(subscriber.rows.isEmpty());
+
+    subscriber.subscription.request(10);
+    subscriber.awaitRows(10);
+    Thread.sleep(100);
+    assertEquals(10, subscriber.rows.size());
+    assertTrue(reader.count.get() <= 10 + 16);
+
+    subscriber.subscription.request(Long.MAX_VALUE);
+    assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+    assertNull(subscriber.error);
+    assertEquals(1000, subscriber.rows.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(String.valueOf(i), subscriber.rows.get(i).get(0));
+    }
+    assertTrue(reader.closed);
+  }
+
+  /**
+   * Test of subscribe method, of class RowPublisher, with a cancelled subscription.
+   */
+  @Test
+  public void testSubscribe_cancel() throws Exception {
+    CountingReader reader = new CountingReader(createCsv(1000));
+    RowPublisher<List<String>> publisher = new RowPublisher<>(reader, executor, 8);
+    TestSubscriber subscriber = new TestSubscriber();
+    publisher.subscribe(subscriber);
+    subscriber.subscription.request(3);
+    subscriber.awaitRows(3);
+    subscriber.subscription.cancel();
+    Thread.sleep(100);
+    assertTrue(reader.closed);
+    assertEquals(3, subscriber.rows.size());
+    assertEquals(1, subscriber.completed.getCount());
+  }
+
+  /**
+   * Test of subscribe method, of class RowPublisher, with the second subscriber.
+   */
+  @Test
+  public void testSubscribe_twice() throws Exception {
+    RowPublisher<List<String>> publisher = new RowPublisher<>(
+        new CountingReader(createCsv(1)), executor, 8);
+    publisher.subscribe(new TestSubscriber());
+    TestSubscriber subscriber = new TestSubscriber();
+    publisher.subscribe(subscriber);
+    assertTrue(subscriber.error instanceof IllegalStateException);
+  }
+
+  /**
+   * Test of request method, of class RowPublisher, with a non-positive number.
+   */
+  @Test
+  public void testRequest_nonPositive() throws Exception {
+    RowPublisher<List<String>> publisher = new RowPublisher<>(
+        new CountingReader(createCsv(10)), executor, 8);
+    TestSubscriber subscriber = new TestSubscriber();
+    publisher.subscribe(subscriber);
+    subscriber.subscription.request(0);
+    // the error may be signalled by the task that is passing the prefetched rows
+    assertTrue(subscriber.failed.await(10, TimeUnit.SECONDS));
+    assertTrue(subscriber.error instanceof IllegalArgumentException);
+    assertFalse(subscriber.rows.size() > 0);
+  }
+
+  private static String createCsv(int rows) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      sb.append(i).append(",a\n");
+    }
+    return sb.toString();
+  }
+
+  private static class CountingReader extends DefaultCsvReader {
+
+    final AtomicInteger count = new AtomicInteger();
+    volatile boolean closed;
+
+    CountingReader(String csv) {
+      super(new StringReader(csv), CsvProperties.DEFAULT);
+    }
+
+    @Override
+    protected List<String> createNewRow(long rowIndex) {
+      count.incrementAndGet();
+      return super.createNewRow(rowIndex);
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+  }
+
+  private static class TestSubscriber implements Subscriber<List<String>> {
+
+    final List<List<String>> rows = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch completed = new CountDownLatch(1);
+    final CountDownLatch failed = new CountDownLatch(1);
+    volatile Subscription subscription;
+    volatile Throwable error;
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      subscription = s;
+    }
+
+    @Override
+    public void onNext(List<String> row) {
+      rows.add(row);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+      failed.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed.countDown();
+    }
+
+    void awaitRows(int n) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (rows.size() < n && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author kohii
+ */
+public class ValueCacheTest {
+
+  /**
+   * Test of get method, of class ValueCache.
+   */
+  @Test
+  public void testGet() {
+    ValueCache cache = new ValueCache();
+    char[] chars = "xUSDx".toCharArray();
+    String usd = cache.get(0, chars, 1, 3);
+    assertEquals("USD", usd);
+    assertSame(usd, cache.get(0, "USD".toCharArray(), 0, 3));
+    // columns are cached separately
+    assertNotSame(usd, cache.get(1, chars, 1, 3));
+    assertEquals("", cache.get(0, chars, 1, 0));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  /**
+   * Test of get method, of class ValueCache, with a value replaced in its slot.
+   */
+  @Test
+  public void testGet_evict() {
+    ValueCache cache = new ValueCache(1);
+    String a = cache.get(0, "A".toCharArray(), 0, 1);
+    assertSame(a, cache.get(0, "A".toCharArray(), 0, 1));
+    String b = cache.get(0, "B".toCharArray(), 0, 1);
+    assertSame(b, cache.get(0, "B".toCharArray(), 0, 1));
+    assertNotSame(a, cache.get(0, "A".toCharArray(), 0, 1));
+  }
+
+  /**
+   * Test of isEnabled method, of class ValueCache.
+   */
+  @Test
+  public void testIsEnabled() {
+    ValueCache cache = new ValueCache();
+    // the first sample is not judged
+    for (int i = 0; i < ValueCache.SAMPLE_SIZE * 2; i++) {
+      char[] unique = Integer.toString(i).toCharArray();
+      cache.get(0, unique, 0, unique.length);
+      char[] status = (i % 3 == 0 ? "OK" : "NG").toCharArray();
+      cache.get(1, status, 0, status.length);
+    }
+    assertFalse(cache.isEnabled(0));
+    assertTrue(cache.isEnabled(1));
+    assertEquals(0, cache.getHitRate(0), 0);
+    assertEquals(1 - 2.0 / (ValueCache.SAMPLE_SIZE * 2), cache.getHitRate(1), 0.000001);
+
+    char[] chars = "1".toCharArray();
+    String one = cache.get(0, chars, 0, 1);
+    assertEquals("1", one);
+    assertNotSame(one, cache.get(0, chars, 0, 1));
+    assertEquals(ValueCache.SAMPLE_SIZE * 2 + 2, cache.getMissCount(0));
+  }
+
+  /**
+   * Test of isEnabled method, of class ValueCache, with a column that starts repeating after the
+   * first sample.
+   */
+  @Test
+  public void testIsEnabled_warmUp() {
+    ValueCache cache = new ValueCache(4096);
+    for (int i = 0; i < ValueCache.SAMPLE_SIZE * 2 / 3; i++) {
+      char[] unique = ("v" + i).toCharArray();
+      cache.get(0, unique, 0, unique.length);
+    }
+    for (int i = 0; i < ValueCache.SAMPLE_SIZE * 3; i++) {
+      char[] repeated = ("r" + i % 100).toCharArray();
+      cache.get(0, repeated, 0, repeated.length);
+    }
+    assertTrue(cache.isEnabled(0));
+    char[] chars = "r5".toCharArray();
+    assertSame(cache.get(0, chars, 0, 2), cache.get(0, chars, 0, 2));
+  }
+
+  /**
+   * Test of isEnabled method, of class ValueCache, with a column that starts repeating after it
+   * has stopped being cached.
+   */
+  @Test
+  public void testIsEnabled_reprobe() {
+    ValueCache cache = new ValueCache();
+    for (int i = 0; i < ValueCache.SAMPLE_SIZE * 2; i++) {
+      char[] unique = Integer.toString(i).toCharArray();
+      cache.get(0, unique, 0, unique.length);
+    }
+    assertFalse(cache.isEnabled(0));
+    char[] chars = "X".toCharArray();
+    for (int i = 0; i < ValueCache.REPROBE_INTERVAL; i++) {
+      cache.get(0, chars, 0, 1);
+    }
+    assertTrue(cache.isEnabled(0));
+    assertSame(cache.get(0, chars, 0, 1), cache.get(0, chars, 0, 1));
+  }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -29,6 +30,7 @@ import java.util.List;
 import com.smoothcsv.csv.prop.CsvProperties;
 import com.smoothcsv.csv.prop.LineSeparator;
 import com.smoothcsv.csv.prop.QuoteApplyRule;
+import com.smoothcsv.csv.prop.QuoteEscapeRule;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -63,6 +65,106 @@ public class AbstractCsvWriterTest {
     assertEquals(readFile("test_0.csv"), csv);
   }
 
+  /**
+   * Test of writeRow method, of class AbstractCsvWriter, with values quoted if necessary.
+   */
+  @Test
+  public void testWriteRow_quotesIfNecessary() throws Exception {
+    AbstractCsvWriter<List<String>> instance = createWriter(CsvProperties.DEFAULT,
+        CsvWriteOption.of(QuoteApplyRule.QUOTES_IF_NECESSARY));
+    instance.writeRow(Arrays.asList("abc", "a,\"b\"\"c\"", "\"", "x\ny\""));
+    assertEquals("abc,\"a,\"\"b\"\"\"\"c\"\"\",\"\"\"\",\"x\ny\"\"\"\n",
+        getResultString(instance));
+
+    instance = createWriter(CsvProperties.of(',', '"', QuoteEscapeRule.escapeWith('\\')),
+        CsvWriteOption.DEFAULT);
+    instance.writeRow(Arrays.asList("a\"b\"", "c"));
+    assertEquals("\"a\\\"b\\\"\",\"c\"\n", getResultString(instance));
+  }
+
+  /**
+   * Test of appliesQuoting method, of class AbstractCsvWriter, called by writeRow.
+   */
+  @Test
+  public void testWriteRow_appliesQuoting() throws Exception {
+    StringWriter out = new StringWriter();
+    AbstractCsvWriter<List<String>> instance = new AbstractCsvWriterImpl(out) {
+      @Override
+      protected boolean appliesQuoting(String value, long rowIndex, int columnIndex) {
+        return columnIndex == 1;
+      }
+    };
+    instance.writeRow(Arrays.asList("a", "b", "c"));
+    instance.close();
+    assertEquals("a,\"b\",c\n", out.toString());
+  }
+
+  /**
+   * Test of appliesQuoting method, of class AbstractCsvWriter, called by writeInt and the other
+   * methods that write a typed value.
+   */
+  @Test
+  public void testWriteInt_appliesQuoting() throws Exception {
+    StringWriter out = new StringWriter();
+    AbstractCsvWriter<List<String>> instance = new AbstractCsvWriterImpl(out) {
+      @Override
+      protected boolean appliesQuoting(String value, long rowIndex, int columnIndex) {
+        return columnIndex == 1;
+      }
+    };
+    instance.writeString("a");
+    instance.writeString("b");
+    instance.endRow(LineSeparator.LF);
+    instance.writeInt(4);
+    instance.writeInt(5);
+    instance.writeDouble(1.5);
+    instance.endRow(LineSeparator.LF);
+    instance.writeLong(6);
+    instance.writeDate(LocalDate.of(2016, 1, 2));
+    instance.endRow(LineSeparator.LF);
+    instance.close();
+    assertEquals("a,\"b\"\n4,\"5\",1.5\n6,\"2016-01-02\"\n", out.toString());
+  }
+
+  /**
+   * Test of writeInt, writeLong, writeDouble, writeDate and endRow methods, of class
+   * AbstractCsvWriter.
+   */
+  @Test
+  public void testWriteLong() throws Exception {
+    for (QuoteApplyRule rule : QuoteApplyRule.values()) {
+      for (char separator : new char[]{',', '.', '-'}) {
+        CsvProperties prop = CsvProperties.of(separator);
+        AbstractCsvWriter<List<String>> expected = createWriter(prop, CsvWriteOption.of(rule));
+        AbstractCsvWriter<List<String>> instance = createWriter(prop, CsvWriteOption.of(rule));
+        double[] doubles = {1.5, -0.25, 100, 1e-10, 12345678.9, Double.NaN, -0.0};
+        for (double d : doubles) {
+          LocalDate date = LocalDate.of(-12, 3, 4);
+          expected.writeRow(Arrays.asList(Integer.toString(Integer.MIN_VALUE),
+              Long.toString(Long.MAX_VALUE), Double.toString(d), date.toString(), "a\"b"));
+          instance.writeInt(Integer.MIN_VALUE);
+          instance.writeLong(Long.MAX_VALUE);
+          instance.writeDouble(d);
+          instance.writeDate(date);
+          instance.writeString("a\"b");
+          instance.endRow(LineSeparator.LF);
+        }
+        assertEquals(rule + " " + separator, getResultString(expected),
+            getResultString(instance));
+      }
+    }
+  }
+
+  /**
+   * Test of writeRow method, of class AbstractCsvWriter, while a row is being written.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testWriteRow_rowStarted() throws Exception {
+    AbstractCsvWriter<List<String>> instance = createWriter();
+    instance.writeInt(1);
+    instance.writeRow(Arrays.asList("a"));
+  }
+
   /**
    * Test of writeAll method, of class AbstractCsvWriter.
    */
@@ -139,15 +241,15 @@ public class AbstractCsvWriterTest {
       this.out = out;
     }
 
-    public Object extractLineSeparator(List<String> row, int rowIndex) {
+    public Object extractLineSeparator(List<String> row, long rowIndex) {
       return LineSeparator.LF.stringValue();
     }
 
-    public String extractValue(List<String> row, int rowIndex, int columnIndex) {
+    public String extractValue(List<String> row, long rowIndex, int columnIndex) {
       return row.get(columnIndex);
     }
 
-    public int extractColumnSize(List<String> row, int rowIndex) {
+    public int extractColumnSize(List<String> row, long rowIndex) {
       return row.size();
     }
 
@@ -15,11 +15,15 @@ package com.smoothcsv.csv.writer;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
+import com.smoothcsv.csv.prop.CsvProperties;
 import com.smoothcsv.csv.prop.LineSeparator;
 import org.junit.After;
 import org.junit.Before;
@@ -62,7 +66,7 @@ public class DefaultCsvWriterTest {
   @Test
   public void testExtractValue() {
     List<Object> row = Arrays.asList("a", "b", "c");
-    int rowIndex = 0;
+    long rowIndex = 0;
     String result;
     result = csvWriter.extractValue(row, rowIndex, 0);
     assertEquals("a", result);
@@ -82,4 +86,36 @@ public class DefaultCsvWriterTest {
     assertEquals(3, result);
   }
 
+  /**
+   * Test of writeRow method, of class DefaultCsvWriter, writing to an OutputStream and a channel.
+   */
+  @Test
+  public void testWriteRow_utf8() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      sb.append("あ\uD83D\uDE00é\"");
+    }
+    List<Object> row = Arrays.asList("a", sb.toString(), 1);
+    StringWriter expected = new StringWriter();
+    try (DefaultCsvWriter writer = new DefaultCsvWriter(expected)) {
+      writer.writeRow(row);
+      writer.writeRow(row);
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DefaultCsvWriter writer = new DefaultCsvWriter(out, CsvProperties.DEFAULT,
+        CsvWriteOption.DEFAULT)) {
+      writer.writeRow(row);
+      writer.writeRow(row);
+    }
+    assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+    out.reset();
+    try (DefaultCsvWriter writer = new DefaultCsvWriter(Channels.newChannel(out),
+        CsvProperties.DEFAULT, CsvWriteOption.DEFAULT)) {
+      writer.writeRow(row);
+      writer.writeRow(row);
+    }
+    assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
 }
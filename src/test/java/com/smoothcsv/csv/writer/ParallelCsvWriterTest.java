@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.writer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author kohii
+ */
+public class ParallelCsvWriterTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public ParallelCsvWriterTest() {}
+
+  @AfterClass
+  public static void tearDownClass() {
+    POOL.shutdown();
+  }
+
+  /**
+   * Test of writeRow method, of class ParallelCsvWriter, with a FileChannel.
+   */
+  @Test
+  public void testWriteRow() throws Exception {
+    List<List<Object>> rows = generate(new Random(1));
+    byte[] expected = writeSequentially(rows);
+
+    for (int batchSize : new int[]{1, 7, 1000, rows.size() + 1}) {
+      for (int maxInFlight : new int[]{1, 3, 16}) {
+        Path path = folder.newFile().toPath();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        try (ParallelCsvWriter<List<Object>> writer = new ParallelCsvWriter<>(channel,
+            ParallelCsvWriterTest::createWriter, POOL, batchSize, maxInFlight)) {
+          writer.writeAll(rows);
+        }
+        assertArrayEquals("batchSize=" + batchSize + ", maxInFlight=" + maxInFlight, expected,
+            Files.readAllBytes(path));
+      }
+    }
+  }
+
+  /**
+   * Test of writeRow method, of class ParallelCsvWriter, with a channel of a stream, and a writer
+   * that skips rows and writes row indices.
+   */
+  @Test
+  public void testWriteRow_rowIndex() throws Exception {
+    List<List<Object>> rows = generate(new Random(2));
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (RowIndexWriter writer = new RowIndexWriter(expected)) {
+      writer.writeAll(rows);
+    }
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (ParallelCsvWriter<List<Object>> writer = new ParallelCsvWriter<>(
+        Channels.newChannel(actual), RowIndexWriter::new, POOL, 5, 2)) {
+      for (List<Object> row : rows) {
+        writer.writeRow(row);
+        if (row.size() == 3) {
+          writer.flush();
+        }
+      }
+    }
+    assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+
+  /**
+   * Test of writeRow method, of class ParallelCsvWriter, with a writer that fails.
+   */
+  @Test
+  public void testWriteRow_error() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AtomicInteger running = new AtomicInteger();
+    ParallelCsvWriter<List<Object>> writer = new ParallelCsvWriter<>(Channels.newChannel(out),
+        o -> new DefaultCsvWriter(o, CsvProperties.DEFAULT, CsvWriteOption.DEFAULT) {
+          @Override
+          protected String extractValue(List<Object> row, long rowIndex, int columnIndex) {
+            running.incrementAndGet();
+            try {
+              if (rowIndex == 10) {
+                throw new IllegalArgumentException("row " + rowIndex);
+              }
+              Thread.sleep(1);
+              return super.extractValue(row, rowIndex, columnIndex);
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            } finally {
+              running.decrementAndGet();
+            }
+          }
+        }, POOL, 4, 2);
+    try {
+      for (int i = 0; i < 100; i++) {
+        writer.writeRow(Arrays.asList(i));
+      }
+      writer.close();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("row 10"));
+      writer.close();
+      // no task formats the rows after the writer is closed
+      assertEquals(0, running.get());
+      assertEquals("\"0\"\n\"1\"\n\"2\"\n\"3\"\n\"4\"\n\"5\"\n\"6\"\n\"7\"\n",
+          out.toString("UTF-8"));
+      return;
+    }
+    throw new AssertionError("no exception");
+  }
+
+  public static class RowIndexWriter extends DefaultCsvWriter {
+
+    public RowIndexWriter(OutputStream out) {
+      super(out, CsvProperties.DEFAULT, CsvWriteOption.DEFAULT);
+    }
+
+    @Override
+    protected String extractValue(List<Object> row, long rowIndex, int columnIndex) {
+      return columnIndex == 0 ? Long.toString(rowIndex) : super.extractValue(row, rowIndex,
+          columnIndex);
+    }
+
+    @Override
+    protected int extractColumnSize(List<Object> row, long rowIndex) {
+      return row.size() == 2 ? -1 : row.size();
+    }
+  }
+
+  private static DefaultCsvWriter createWriter(OutputStream out) {
+    return new DefaultCsvWriter(out, CsvProperties.DEFAULT, CsvWriteOption.DEFAULT);
+  }
+
+  private static byte[] writeSequentially(List<List<Object>> rows) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DefaultCsvWriter writer = createWriter(out)) {
+      writer.writeAll(rows);
+    }
+    return out.toByteArray();
+  }
+
+  private static List<List<Object>> generate(Random random) {
+    String chars = "ab,\"\n\réあ😀";
+    List<List<Object>> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      List<Object> row = new ArrayList<>();
+      int columnSize = random.nextInt(5);
+      for (int j = 0; j < columnSize; j++) {
+        if (random.nextInt(4) == 0) {
+          row.add(random.nextInt(5) == 0 ? null : random.nextDouble());
+          continue;
+        }
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(8);
+        for (int k = 0; k < length; k++) {
+          int c = random.nextInt(chars.length() - 1);
+          if (Character.isHighSurrogate(chars.charAt(c))) {
+            sb.append(chars, c, c + 2);
+          } else if (!Character.isLowSurrogate(chars.charAt(c))) {
+            sb.append(chars.charAt(c));
+          }
+        }
+        row.add(sb.toString());
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+}
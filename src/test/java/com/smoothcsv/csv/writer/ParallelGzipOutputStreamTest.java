@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 kohii
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.smoothcsv.csv.writer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import com.smoothcsv.csv.prop.CsvProperties;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * @author kohii
+ */
+public class ParallelGzipOutputStreamTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  public ParallelGzipOutputStreamTest() {}
+
+  @AfterClass
+  public static void tearDownClass() {
+    POOL.shutdown();
+  }
+
+  /**
+   * Test of write method, of class ParallelGzipOutputStream.
+   */
+  @Test
+  public void testWrite() throws Exception {
+    Random random = new Random(1);
+    byte[] data = generate(random, 300000);
+    for (int blockSize : new int[]{1, 1000, 40000, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE}) {
+      for (int level : new int[]{0, 1, 9, Deflater.DEFAULT_COMPRESSION}) {
+        if (blockSize == 1 && level != 1) {
+          continue;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, POOL, blockSize,
+            level)) {
+          for (int off = 0; off < data.length; ) {
+            int len = Math.min(data.length - off, random.nextInt(50000));
+            if (len == 1) {
+              gzip.write(data[off]);
+            } else {
+              gzip.write(data, off, len);
+            }
+            off += len;
+            if (random.nextInt(10) == 0) {
+              gzip.flush();
+            }
+          }
+        }
+        assertArrayEquals("blockSize=" + blockSize + ", level=" + level, data,
+            gunzip(out.toByteArray()));
+      }
+    }
+  }
+
+  /**
+   * Test of close method, of class ParallelGzipOutputStream, without data.
+   */
+  @Test
+  public void testClose_empty() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ParallelGzipOutputStream(out).close();
+    assertEquals(0, gunzip(out.toByteArray()).length);
+  }
+
+  /**
+   * Test of ParallelGzipOutputStream passed to DefaultCsvWriter.
+   */
+  @Test
+  public void testWriteRow() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DefaultCsvWriter writer = new DefaultCsvWriter(
+        new ParallelGzipOutputStream(out, POOL, 16, Deflater.DEFAULT_COMPRESSION),
+        CsvProperties.DEFAULT, CsvWriteOption.DEFAULT)) {
+      for (int i = 0; i < 100; i++) {
+        writer.writeRow(Arrays.asList(i, "あ"));
+      }
+    }
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      expected.append('"').append(i).append("\",\"あ\"\n");
+    }
+    assertEquals(expected.toString(),
+        new String(gunzip(out.toByteArray()), StandardCharsets.UTF_8));
+  }
+
+  private static byte[] generate(Random random, int length) {
+    // repetitive enough to be compressed with references to the previous blocks
+    String[] words = {"abc", "kohii", "smoothcsv", ",", "\n", "\"", "123", "4.56"};
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    while (out.size() < length) {
+      byte[] word = random.nextInt(20) == 0 ? new byte[]{(byte) random.nextInt()}
+          : words[random.nextInt(words.length)].getBytes(StandardCharsets.UTF_8);
+      out.write(word, 0, word.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] gunzip(byte[] bytes) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    }
+  }
+}